@@ -0,0 +1,365 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 Georg A. Friedrich
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.georg;
+
+import com.georg.Generator.BulkSolver;
+import com.georg.Generator.GenerationPipeline;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+//@formatter:off
+/**
+ * The headless mode of the program, it
+ * needs no display, f.E.
+ * <pre><code>
+ * java com.georg.Main generate --count 1000 --levels Easy,Evil
+ *      --threads 4 --seed 42 --format line --out puzzles.txt
+ * java com.georg.Main solve --mode count --in puzzles.txt
+ * </code></pre>
+ * The results are written while they are found,
+ * the summary of the run goes to the error stream.
+ */
+//@formatter:on
+public final class CommandLine {
+    /**
+     * The exit code for wrong arguments.
+     */
+    public static final int EXIT_USAGE = 2;
+
+    private static final String USAGE = String.join("\n",
+            "Usage: generate [options]",
+            "  --count <n>       Sudokus per level (default 10)",
+            "  --levels <a,b>    Levels to generate (default all)",
+            "  --threads <n>     Digging threads (default all cores)",
+            "  --seed <n>        Seed, the same output with --threads 1",
+            "  --format <f>      line, grid, csv or archive (default line)",
+            "  --out <file>      Output file (default stdout)",
+            "Usage: solve [options]",
+            "  --mode <m>        solve or count (default solve)",
+            "  --limit <n>       Highest count of interest (default 2)",
+            "  --threads <n>     Solving threads (default all cores)",
+            "  --budget <ms>     Time per sudoku (default no limit)",
+            "  --in <file>       Sudokus as lines or grids (default stdin)",
+            "  --out <file>      Output file (default stdout)");
+
+    private CommandLine() {
+    }
+
+    /**
+     * The output formats.
+     */
+    private enum Format {
+        /**
+         * One {@link Sudoku#toLine() line} per sudoku.
+         */
+        line,
+        /**
+         * The {@link Sudoku#toString() grid}
+         * under a line with the level.
+         */
+        grid,
+        /**
+         * <code>level,sudoku,solution</code> per line.
+         */
+        csv,
+        /**
+         * A binary {@link PuzzleArchive} with
+         * the solutions, only into a file.
+         */
+        archive;
+
+        private void write(Writer out, Sudoku su) throws IOException {
+            switch (this) {
+                case line:
+                    out.write(su.toLine());
+                    break;
+                case grid:
+                    out.write("# " + su.getDifficulty().name() + "\n");
+                    out.write(su.toString());
+                    out.write("\n");
+                    break;
+                case csv:
+                    out.write(su.getDifficulty().name() + "," + su.toLine() + ","
+                            + (su.getSolution() == null ? "" : su.getSolution().toLine()));
+                    break;
+            }
+            out.write("\n");
+        }
+    }
+
+    /**
+     * Where the sudokus are written to.
+     */
+    private interface Sink extends Closeable {
+        void write(Sudoku su) throws IOException;
+    }
+
+    /**
+     * @param format The format.
+     * @param file   The name of the file,
+     *               null or - for stdout.
+     * @return The sink for the sudokus.
+     */
+    private static Sink sink(Format format, String file) throws IOException {
+        if (format == Format.archive) {
+            PuzzleArchive.Writer out = new PuzzleArchive.Writer(Paths.get(file), true);
+            return new Sink() {
+                @Override
+                public void write(Sudoku su) throws IOException {
+                    out.write(su);
+                }
+
+                @Override
+                public void close() throws IOException {
+                    out.close();
+                }
+            };
+        }
+        Writer out = output(file);
+        return new Sink() {
+            @Override
+            public void write(Sudoku su) throws IOException {
+                format.write(out, su);
+            }
+
+            @Override
+            public void close() throws IOException {
+                out.close();
+            }
+        };
+    }
+
+    /**
+     * Runs the command given by the arguments.
+     *
+     * @param args The arguments of the program.
+     * @return The exit code, 0 on success.
+     */
+    public static int run(String[] args) {
+        try {
+            Map<String, String> options = parse(args);
+            switch (args[0]) {
+                case "generate":
+                    generate(options);
+                    return 0;
+                case "solve":
+                    solve(options);
+                    return 0;
+                default:
+                    throw new ValueFormatException("Unknown command " + args[0]);
+            }
+        } catch (ValueFormatException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            return EXIT_USAGE;
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+            return 1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return 1;
+        }
+    }
+
+    /**
+     * @param args The arguments, the command first
+     *             and then <code>--name value</code> pairs.
+     * @return The options by name, without the dashes.
+     * @throws ValueFormatException If an option has no value.
+     */
+    private static Map<String, String> parse(String[] args) throws ValueFormatException {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 1; i < args.length; i += 2) {
+            if (!args[i].startsWith("--") || i + 1 == args.length)
+                throw new ValueFormatException("Expected --option value at " + args[i]);
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+        return options;
+    }
+
+    /**
+     * @param options The options.
+     * @param name    The name of the option.
+     * @param def     The default value.
+     * @return The value of the option.
+     * @throws ValueFormatException If it is not a number.
+     */
+    private static long number(Map<String, String> options, String name, long def) throws ValueFormatException {
+        String value = options.remove(name);
+        if (value == null)
+            return def;
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new ValueFormatException("--" + name + " is no number: " + value);
+        }
+    }
+
+    /**
+     * @param names The level names, separated by commas.
+     * @return The levels.
+     * @throws ValueFormatException If a name is no level
+     *                              which can be generated.
+     */
+    private static List<Level> levels(String names) throws ValueFormatException {
+        List<Level> ret = new ArrayList<>();
+        if (names == null) {
+            for (Level l : Level.values())
+                if (l.getMaxTotalGiven() >= 0)
+                    ret.add(l);
+            return ret;
+        }
+        for (String name : names.split(",")) {
+            Level found = null;
+            for (Level l : Level.values())
+                if (l.getMaxTotalGiven() >= 0 && l.name().equalsIgnoreCase(name.trim()))
+                    found = l;
+            if (found == null)
+                throw new ValueFormatException("Unknown level " + name);
+            ret.add(found);
+        }
+        return ret;
+    }
+
+    /**
+     * Generates the sudokus level by level on a
+     * {@link GenerationPipeline} and writes them
+     * in the order they are finished. The latency
+     * in the summary is the time of one sudoku
+     * through the pipeline, see
+     * {@link GenerationPipeline#getLatency(double)}.
+     *
+     * @param options The options of the command.
+     */
+    private static void generate(Map<String, String> options) throws ValueFormatException, IOException, InterruptedException {
+        long count = number(options, "count", 10);
+        int threads = (int) number(options, "threads", Runtime.getRuntime().availableProcessors());
+        Long seed = options.containsKey("seed") ? number(options, "seed", 0) : null;
+        List<Level> levels = levels(options.remove("levels"));
+        String name = options.remove("format");
+        Format format;
+        try {
+            format = name == null ? Format.line : Format.valueOf(name);
+        } catch (IllegalArgumentException e) {
+            throw new ValueFormatException("Unknown format " + name);
+        }
+        String file = options.remove("out");
+        if (!options.isEmpty())
+            throw new ValueFormatException("Unknown options " + options.keySet());
+        if (count < 0 || threads < 1)
+            throw new ValueFormatException("--count and --threads have to be positive");
+        if (format == Format.archive && (file == null || file.equals("-")))
+            throw new ValueFormatException("An archive needs an --out file");
+
+        List<String> summary = new ArrayList<>();
+        summary.add(String.format("%-14s %8s %10s %12s %10s %10s",
+                "level", "sudokus", "seconds", "sudokus/s", "p50 ms", "p99 ms"));
+        long total = 0;
+        long start = System.nanoTime();
+        try (Sink out = sink(format, file)) {
+            for (int i = 0; i < levels.size(); i++) {
+                Level l = levels.get(i);
+                long levelStart = System.nanoTime();
+                // Every level gets its own seed, so a level is the same without the others.
+                try (GenerationPipeline pipeline = seed == null
+                        ? new GenerationPipeline(l, threads)
+                        : new GenerationPipeline(l, threads, GenerationPipeline.DEFAULT_CAPACITY, seed + l.ordinal())) {
+                    pipeline.start();
+                    for (long n = 0; n < count; n++)
+                        out.write(pipeline.take());
+                    double seconds = (System.nanoTime() - levelStart) / 1e9;
+                    summary.add(String.format("%-14s %8d %10.2f %12.1f %10.2f %10.2f", l.name(), count, seconds,
+                            count / seconds, pipeline.getLatency(50) / 1e6, pipeline.getLatency(99) / 1e6));
+                }
+                total += count;
+            }
+        } finally {
+            double seconds = (System.nanoTime() - start) / 1e9;
+            summary.add(String.format("%-14s %8d %10.2f %12.1f", "total", total, seconds, total / seconds));
+            for (String s : summary)
+                System.err.println(s);
+        }
+    }
+
+    /**
+     * Solves every line of the input with a
+     * {@link BulkSolver} and writes the results
+     * in the order of the input.
+     *
+     * @param options The options of the command.
+     */
+    private static void solve(Map<String, String> options) throws ValueFormatException, IOException, InterruptedException {
+        String name = options.remove("mode");
+        BulkSolver.Mode mode;
+        try {
+            mode = name == null ? BulkSolver.Mode.SOLVE : BulkSolver.Mode.valueOf(name.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new ValueFormatException("Unknown mode " + name);
+        }
+        int limit = (int) number(options, "limit", 2);
+        int threads = (int) number(options, "threads", Runtime.getRuntime().availableProcessors());
+        long budget = number(options, "budget", 0);
+        String in = options.remove("in");
+        String file = options.remove("out");
+        if (!options.isEmpty())
+            throw new ValueFormatException("Unknown options " + options.keySet());
+        if (limit < 1 || threads < 1)
+            throw new ValueFormatException("--limit and --threads have to be positive");
+
+        long start = System.nanoTime();
+        long lines = 0;
+        try (SudokuReader reader = in == null || in.equals("-")
+                ? SudokuReader.stdin() : new SudokuReader(Paths.get(in));
+             Writer out = output(file);
+             BulkSolver solver = new BulkSolver(mode, threads, BulkSolver.DEFAULT_WINDOW, budget)) {
+            solver.setLimit(limit);
+            lines = solver.solve(reader, out);
+        } finally {
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.err.println(String.format("%d sudokus in %.2f s, %.1f sudokus/s", lines, seconds, lines / seconds));
+        }
+    }
+
+    /**
+     * @param file The name of the file,
+     *             null or - for stdout.
+     * @return The buffered output.
+     */
+    private static Writer output(String file) throws IOException {
+        if (file == null || file.equals("-"))
+            return new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+        return Files.newBufferedWriter(Paths.get(file), StandardCharsets.UTF_8);
+    }
+}
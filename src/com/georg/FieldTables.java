@@ -0,0 +1,135 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 Georg A. Friedrich
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.georg;
+
+import static com.georg.Sudoku.BLOCK_SIZE;
+import static com.georg.Sudoku.FIELD_COUNT;
+import static com.georg.Sudoku.FIELD_SIZE;
+
+//@formatter:off
+/**
+ * Precomputed lookup tables for the geometry
+ * of the field, shared by the solvers, the
+ * generator and the GUI. All tables are flat
+ * int arrays, so a lookup replaces the
+ * divisions and modulos on the hot paths.
+ * <p>
+ * The units are numbered like this:
+ * <pre><code>
+ * 0  - 8  : rows    (top to bottom)
+ * 9  - 17 : columns (left to right)
+ * 18 - 26 : blocks  (row by row)
+ * </code></pre>
+ * The cells of unit <b>u</b> are
+ * <code>UNIT_CELLS[u * FIELD_SIZE ... u * FIELD_SIZE + 8]</code>,
+ * the peers of cell <b>i</b> are
+ * <code>PEERS[i * PEER_COUNT ... i * PEER_COUNT + 19]</code>.
+ */
+//@formatter:on
+public final class FieldTables {
+    /**
+     * The number of units (rows, columns
+     * and blocks) on the field.
+     */
+    public static final int UNIT_COUNT = 3 * FIELD_SIZE;
+    /**
+     * The number of cells that share a
+     * row, column or block with a cell.
+     */
+    public static final int PEER_COUNT = 3 * (FIELD_SIZE - 1) - 2 * (BLOCK_SIZE - 1);
+    /**
+     * The row of each index.
+     */
+    public static final int[] ROW_OF = new int[FIELD_COUNT];
+    /**
+     * The column of each index.
+     */
+    public static final int[] COL_OF = new int[FIELD_COUNT];
+    /**
+     * The block of each index.
+     * Blocks are numbered row by row.
+     */
+    public static final int[] BOX_OF = new int[FIELD_COUNT];
+    /**
+     * The {@link #PEER_COUNT} peers of each
+     * index, without the index itself.
+     */
+    public static final int[] PEERS = new int[FIELD_COUNT * PEER_COUNT];
+    /**
+     * The {@link Sudoku#FIELD_SIZE FIELD_SIZE}
+     * indices of each unit.
+     */
+    public static final int[] UNIT_CELLS = new int[UNIT_COUNT * FIELD_SIZE];
+
+    static {
+        for (int i = 0; i < FIELD_COUNT; i++) {
+            ROW_OF[i] = i / FIELD_SIZE;
+            COL_OF[i] = i % FIELD_SIZE;
+            BOX_OF[i] = i / (FIELD_SIZE * BLOCK_SIZE) * BLOCK_SIZE + (i % FIELD_SIZE) / BLOCK_SIZE;
+        }
+        for (int u = 0; u < FIELD_SIZE; u++) {
+            int blockStart = u / BLOCK_SIZE * FIELD_SIZE * BLOCK_SIZE + u % BLOCK_SIZE * BLOCK_SIZE;
+            for (int j = 0; j < FIELD_SIZE; j++) {
+                UNIT_CELLS[u * FIELD_SIZE + j] = u * FIELD_SIZE + j;
+                UNIT_CELLS[(FIELD_SIZE + u) * FIELD_SIZE + j] = j * FIELD_SIZE + u;
+                UNIT_CELLS[(2 * FIELD_SIZE + u) * FIELD_SIZE + j] = blockStart + j / BLOCK_SIZE * FIELD_SIZE + j % BLOCK_SIZE;
+            }
+        }
+        for (int i = 0; i < FIELD_COUNT; i++) {
+            int n = i * PEER_COUNT;
+            for (int j = 0; j < FIELD_COUNT; j++) {
+                if (j != i && (ROW_OF[j] == ROW_OF[i] || COL_OF[j] == COL_OF[i] || BOX_OF[j] == BOX_OF[i]))
+                    PEERS[n++] = j;
+            }
+        }
+    }
+
+    private FieldTables() {
+    }
+
+    /**
+     * @param row The row [0, 8].
+     * @return The unit number of the row.
+     */
+    public static int rowUnit(int row) {
+        return row;
+    }
+
+    /**
+     * @param col The column [0, 8].
+     * @return The unit number of the column.
+     */
+    public static int colUnit(int col) {
+        return FIELD_SIZE + col;
+    }
+
+    /**
+     * @param block The block [0, 8].
+     * @return The unit number of the block.
+     */
+    public static int blockUnit(int block) {
+        return 2 * FIELD_SIZE + block;
+    }
+}
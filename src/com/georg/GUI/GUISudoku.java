@@ -24,14 +24,12 @@
 
 package com.georg.GUI;
 
+import com.georg.FieldTables;
 import com.georg.Generator.CanBeDugList;
-import com.georg.Generator.CompSudoku;
 import com.georg.Level;
 import com.georg.Sudoku;
 import com.georg.ValueFormatException;
 
-import java.util.List;
-
 /**
  * Created by Georg on 05/06/16.
  * <p>
@@ -56,7 +54,7 @@ class GUISudoku extends Sudoku {
      * @throws ValueFormatException If the input is wrong.
      */
     GUISudoku(Sudoku sudoku) throws ValueFormatException {
-        super(sudoku.getDifficulty(), sudoku.getField());
+        super(sudoku.getDifficulty(), sudoku.getField(), sudoku.getSolution());
     }
 
     /**
@@ -102,23 +100,27 @@ class GUISudoku extends Sudoku {
      * Returns a list of all number on the field
      * that are breaking one of the following rules:
      * <ul>
-     * <li>{@link CompSudoku#rule_1(Boolean[])}</li>
-     * <li>{@link CompSudoku#rule_2(Boolean[])}</li>
-     * <li>{@link CompSudoku#rule_3(Boolean[])}</li>
+     * <li>No double numbers in a row</li>
+     * <li>No double numbers in a column</li>
+     * <li>No double numbers in a block</li>
      * </ul>
+     * Every number is compared with its
+     * {@link FieldTables#PEERS peers}. Free fields
+     * are marked as well.
      *
      * @return A {@link CanBeDugList} where all rule-braking
      * fields are marked false.
      * @throws ValueFormatException
      */
     CanBeDugList getInvalid() throws ValueFormatException {
-        CompSudoku su = new CompSudoku(this);
         CanBeDugList ret = new CanBeDugList();
 
         for (int i = 0; i < Sudoku.FIELD_COUNT; i++) {
-            CompSudoku dug = su.digClone(i);
-            List<Byte> avail = dug.getAvailable();
-            if (!avail.contains(su.getAtIndex(i)))
+            byte value = field[i];
+            boolean valid = value != NAN;
+            for (int p = i * FieldTables.PEER_COUNT, end = p + FieldTables.PEER_COUNT; valid && p < end; p++)
+                valid = field[FieldTables.PEERS[p]] != value;
+            if (!valid)
                 ret.setAtIndex(i, false);
         }
         return ret;
@@ -48,6 +48,11 @@ public class GeneratingDialog extends JDialog {
      * corresponding method in the thread class.
      */
     private static GeneratingDialog lastM;
+    /**
+     * Called on cancel, for work that
+     * does not stop with the thread.
+     */
+    private final Runnable cancelAction;
     /* By IntelliJ's GUI Designer
      * generated variables.*/
     private JPanel contentPane;
@@ -68,6 +73,20 @@ public class GeneratingDialog extends JDialog {
      * @param sudokuGen A not started thread instance.
      */
     GeneratingDialog(final Thread sudokuGen) {
+        this(sudokuGen, null);
+    }
+
+    /**
+     * Same as {@link #GeneratingDialog(Thread)}, but
+     * also runs the cancel action, if the user cancels.
+     * Needed for calculations that run on other threads
+     * than the given one, f.E. on a thread pool.
+     *
+     * @param sudokuGen    A not started thread instance.
+     * @param cancelAction Called if the user cancels, can be null.
+     */
+    GeneratingDialog(final Thread sudokuGen, Runnable cancelAction) {
+        this.cancelAction = cancelAction;
         lastM = this;
         sudokuGen.start();
         setContentPane(contentPane);
@@ -111,8 +130,11 @@ public class GeneratingDialog extends JDialog {
      */
     @SuppressWarnings("deprecation")
     private void onCancel(Thread sudokuGen) {
-        if (sudokuGen != null)
+        if (sudokuGen != null) {
+            if (cancelAction != null)
+                cancelAction.run();
             sudokuGen.stop();
+        }
         dispose();
     }
 
@@ -24,6 +24,7 @@
 
 package com.georg.GUI;
 
+import com.georg.FieldTables;
 import com.georg.Sudoku;
 
 import javax.swing.*;
@@ -80,13 +81,15 @@ class SudokuSpinner extends JSpinner {
 
         //                      t l b r
         int[] bordW = new int[]{0, 0, 0, 0};
-        if (ID % Sudoku.BLOCK_SIZE == Sudoku.BLOCK_SIZE - 1)
+        int col = FieldTables.COL_OF[ID] % Sudoku.BLOCK_SIZE;
+        int row = FieldTables.ROW_OF[ID] % Sudoku.BLOCK_SIZE;
+        if (col == Sudoku.BLOCK_SIZE - 1)
             bordW[3] = 1;
-        if (ID % Sudoku.BLOCK_SIZE == 0)
+        if (col == 0)
             bordW[1] = 1;
-        if ((ID / Sudoku.FIELD_SIZE) % Sudoku.BLOCK_SIZE == Sudoku.BLOCK_SIZE - 1)
+        if (row == Sudoku.BLOCK_SIZE - 1)
             bordW[2] = 1;
-        if ((ID / Sudoku.FIELD_SIZE) % Sudoku.BLOCK_SIZE == 0)
+        if (row == 0)
             bordW[0] = 1;
 
         Border border1 = BorderFactory.createMatteBorder(1 - bordW[0], 1 - bordW[1], 1 - bordW[2], 1 - bordW[3], new Color(0x90, 0x90, 0x90));
@@ -24,19 +24,21 @@
 
 package com.georg.GUI;
 
-import com.georg.Generator.CompSudoku;
 import com.georg.Generator.LasVegasAlgorithm;
-import com.georg.Generator.StaticGenerator;
+import com.georg.Generator.ParallelSolutionCounter;
+import com.georg.Generator.PuzzlePool;
 import com.georg.Generator.SudokuSolver;
 import com.georg.Level;
 import com.georg.SaveHandler;
 import com.georg.Sudoku;
+import com.georg.SudokuReader;
 import com.georg.ValueFormatException;
 
 import javax.swing.*;
 import javax.swing.filechooser.FileNameExtensionFilter;
 import java.awt.*;
 import java.awt.event.ActionEvent;
+import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
@@ -53,6 +55,13 @@ public class UserInterface extends JFrame {
      * invalid tiles on the sudoku field.
      */
     static final Color warnColor = new Color(254, 114, 85);
+    /**
+     * The number of solutions at which the
+     * "solve all" button stops counting. A
+     * nearly empty field has far too many
+     * solutions to ever count them all.
+     */
+    private static final int maxSolutions = 1000000;
     /**
      * Saves the last directory that
      * the user used.
@@ -71,10 +80,17 @@ public class UserInterface extends JFrame {
     private JButton solveButton;
     private JButton solveAllButton;
     private JButton saveButton;
+    private JButton openButton;
     private JButton createTerminalPatternButton;
     private JButton quitButton;
     private List<SudokuSpinner> sudokuTextAreas;
     private GUISudoku sudoku;
+    /**
+     * The running parallel count of the
+     * "solve all" button. Cancelled together
+     * with the {@link GeneratingDialog}.
+     */
+    private volatile ParallelSolutionCounter counter;
 
     /**
      * This init method for GUI corresponding
@@ -111,6 +127,8 @@ public class UserInterface extends JFrame {
         difficultyCombo.setSelectedItem(Level.Easy);
 
         generateButton.addActionListener((ActionEvent e) -> sudokuButtonManagement(3));
+        // Starts to fill the stock of every level in the background.
+        PuzzlePool.getShared();
 
         solveButton.addActionListener((ActionEvent e) -> sudokuButtonManagement(2));
 
@@ -124,6 +142,10 @@ public class UserInterface extends JFrame {
             fileChooser.setDialogTitle("Specify location to save.");
             fileChooser.addChoosableFileFilter(new FileNameExtensionFilter("Text file", "txt"));
             fileChooser.addChoosableFileFilter(new FileNameExtensionFilter("PDF File", "pdf"));
+            // The answer key is only known as long as the user did not change the givens.
+            JCheckBox withSolution = new JCheckBox("Save solution too");
+            withSolution.setEnabled(sudoku.getSolution() != null && sudoku.agreesWith(sudoku.getSolution()));
+            fileChooser.setAccessory(withSolution);
 
             int userSelection = fileChooser.showSaveDialog(rootPanel);
 
@@ -141,6 +163,31 @@ public class UserInterface extends JFrame {
                     lastDir = fileChooser.getSelectedFile().getParent();
 
                     SaveHandler.save(name, sudoku);
+                    if (withSolution.isSelected())
+                        SaveHandler.saveSolution(solutionName(name), sudoku);
+                } catch (Exception exception) {
+                    printErrorMessage(exception);
+                }
+            }
+        });
+
+        openButton.addActionListener((ActionEvent e) -> {
+            JFileChooser fileChooser = new JFileChooser(lastDir);
+
+            fileChooser.setDialogTitle("Choose a sudoku to open.");
+            fileChooser.addChoosableFileFilter(new FileNameExtensionFilter("Text file", "txt"));
+
+            if (fileChooser.showOpenDialog(rootPanel) == JFileChooser.APPROVE_OPTION) {
+                lastDir = fileChooser.getSelectedFile().getParent();
+                // Opens the first sudoku of the file.
+                try (SudokuReader reader = new SudokuReader(fileChooser.getSelectedFile().toPath())) {
+                    Sudoku read = reader.read();
+                    if (read == null)
+                        JOptionPane.showMessageDialog(rootPanel, "The file has no sudoku!", "Nothing to open", JOptionPane.INFORMATION_MESSAGE);
+                    else {
+                        sudoku = new GUISudoku(read);
+                        sudokuUpdate();
+                    }
                 } catch (Exception exception) {
                     printErrorMessage(exception);
                 }
@@ -230,9 +277,9 @@ public class UserInterface extends JFrame {
      *
      * @param choice The button that was triggered.
      *               <ul>
-     *               <li><b>0</b> - solves the total number of unique sudokus that can be generated</li>
+     *               <li><b>0</b> - solves the total number of unique sudokus that can be generated, up to {@link #maxSolutions}, on all cores</li>
      *               <li><b>1</b> - generates new terminal pattern</li>
-     *               <li><b>2</b> - Solves the sudoku on the GUI with {@link SudokuSolver#DFSLV(CompSudoku, long, int, int) DFS}</li>
+     *               <li><b>2</b> - Shows the known solution, or solves the sudoku on the GUI with {@link SudokuSolver#solve(Sudoku)}</li>
      *               <li><b>3</b> - generates new solvable sudoku with the selected difficulty</li>
      *               </ul>
      */
@@ -242,21 +289,29 @@ public class UserInterface extends JFrame {
                 if (sudoku.freeFields() == 0 && choice != 1 && choice != 3)
                     JOptionPane.showMessageDialog(rootPanel, "The sudoku has no free fields!", "Nothing to do", JOptionPane.INFORMATION_MESSAGE);
                 else {
-                    int i = -1;
+                    long i = -1;
+                    Sudoku solved = null;
 
                     long start = System.currentTimeMillis();
                     switch (choice) {
                         case 0:
-                            i = SudokuSolver.solutions(sudoku);
+                            counter = new ParallelSolutionCounter(sudoku, maxSolutions);
+                            i = counter.count();
+                            counter = null;
                             break;
                         case 1:
                             sudoku = new GUISudoku(LasVegasAlgorithm.LasVegas(Level.None));
                             break;
                         case 2:
-                            SudokuSolver.DFSLV(new CompSudoku(sudoku), System.currentTimeMillis() * 10, 0, 1);
+                            // The generator knows the solution, as long as the user did not change the givens.
+                            if (sudoku.getSolution() != null && sudoku.agreesWith(sudoku.getSolution()))
+                                solved = sudoku.getSolution();
+                            else
+                                solved = new SudokuSolver().solve(sudoku);
                             break;
                         case 3:
-                            sudoku = new GUISudoku(StaticGenerator.GenerateSudoku((Level) difficultyCombo.getSelectedItem()));
+                            // Served from stock, generated right away only if the level ran out.
+                            sudoku = new GUISudoku(PuzzlePool.getShared().take((Level) difficultyCombo.getSelectedItem()));
                             break;
                     }
 
@@ -270,7 +325,7 @@ public class UserInterface extends JFrame {
                     boolean show = true;
                     switch (choice) {
                         case 0:
-                            msg = "The sudoku has exactly: " + i + " solutions.";
+                            msg = "The sudoku has " + (i < maxSolutions ? "exactly" : "at least") + ": " + i + " solutions.";
                             win = "Number of solutions";
                             break;
                         case 1:
@@ -278,9 +333,8 @@ public class UserInterface extends JFrame {
                             win = "Terminal Pattern created";
                             break;
                         case 2:
-                            Sudoku su = SudokuSolver.getLastField();
-                            if (su != null) {
-                                sudoku = new GUISudoku(su);
+                            if (solved != null) {
+                                sudoku = new GUISudoku(solved);
                                 msg = "Possible solution generated successfully.";
                                 win = "Solution generated";
                             } else {
@@ -305,7 +359,11 @@ public class UserInterface extends JFrame {
             }
         });
         // Modality setting will pause execution of this class.
-        new GeneratingDialog(thread);
+        new GeneratingDialog(thread, () -> {
+            ParallelSolutionCounter c = counter;
+            if (c != null)
+                c.cancel();
+        });
         /* update the GUI sudoku field, because there's
          * a big chance that the sudoku was changed
          * in this method (3 of 4 cases). */
@@ -325,6 +383,18 @@ public class UserInterface extends JFrame {
         JOptionPane.showMessageDialog(rootPanel, e.getMessage(), "Error!", JOptionPane.ERROR_MESSAGE);
     }
 
+    /**
+     * @param name The file name of the sudoku.
+     * @return The file name of its solution,
+     * f.E. sudoku_solution.pdf for sudoku.pdf.
+     */
+    private static String solutionName(String name) {
+        int dot = name.lastIndexOf('.');
+        if (dot <= name.lastIndexOf(File.separatorChar))
+            return name + "_solution";
+        return name.substring(0, dot) + "_solution" + name.substring(dot);
+    }
+
     /**
      * Gives a string back that formats
      * the text in a nice format.
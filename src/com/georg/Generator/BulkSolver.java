@@ -0,0 +1,301 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 Georg A. Friedrich
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.georg.Generator;
+
+import com.georg.Level;
+import com.georg.Sudoku;
+import com.georg.SudokuReader;
+import com.georg.ValueFormatException;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static com.georg.FieldTables.PEERS;
+import static com.georg.FieldTables.PEER_COUNT;
+import static com.georg.Sudoku.FIELD_COUNT;
+import static com.georg.Sudoku.NAN;
+
+//@formatter:off
+/**
+ * Solves a stream of sudokus, read by a
+ * {@link SudokuReader}, f.E. one line of
+ * {@link Sudoku#FIELD_COUNT} characters each.
+ * <p>
+ * The sudokus are solved on a pool of workers.
+ * The results come back in the order of the
+ * input, one line per sudoku:
+ * <pre><code>
+ *  input     -->  workers  -->  reorder buffer  -->  output
+ *  sudoku n       solver        slot n % window      line n
+ * </code></pre>
+ * At most {@link #getWindow() window} sudokus are
+ * on their way at once, so a slow sudoku holds the
+ * input back instead of filling the memory.
+ * A sudoku that can not be read gives
+ * {@value #INVALID}, a search that ran out of
+ * budget gives {@value #TIMEOUT}.
+ */
+//@formatter:on
+public class BulkSolver implements AutoCloseable {
+    /**
+     * The default number of lines on their way at once.
+     */
+    public static final int DEFAULT_WINDOW = 1024;
+    /**
+     * The result of text which is no sudoku,
+     * or one with the same number twice in a unit.
+     */
+    public static final String INVALID = "invalid";
+    /**
+     * The result of a search which ran out of budget.
+     */
+    public static final String TIMEOUT = "timeout";
+    /**
+     * The result of {@link Mode#SOLVE} for
+     * a sudoku without a solution.
+     */
+    public static final String NONE = "none";
+
+    /**
+     * What is written for every sudoku.
+     */
+    public enum Mode {
+        /**
+         * The first {@link Sudoku#toLine() solution}.
+         */
+        SOLVE,
+        /**
+         * The number of solutions, at
+         * most the {@link #setLimit(int) limit}.
+         */
+        COUNT
+    }
+
+    private final Mode mode;
+    private final int window;
+    private final ExecutorService workers;
+    private final ThreadLocal<SudokuSolver> solvers;
+    /**
+     * The reorder buffer, sudoku n waits in slot n % window.
+     */
+    private final String[] slots;
+    private int limit = 2;
+
+    /**
+     * @param mode    What is written for every sudoku.
+     * @param threads The number of workers.
+     */
+    public BulkSolver(Mode mode, int threads) {
+        this(mode, threads, DEFAULT_WINDOW, 0);
+    }
+
+    /**
+     * @param mode       What is written for every sudoku.
+     * @param threads    The number of workers.
+     * @param window     The most sudokus on their way at once.
+     * @param timeBudget The maximum time per sudoku
+     *                   in ms, 0 for no limit.
+     */
+    public BulkSolver(Mode mode, int threads, int window, long timeBudget) {
+        this.mode = mode;
+        this.window = Math.max(window, 1);
+        slots = new String[this.window];
+        workers = Executors.newFixedThreadPool(Math.max(threads, 1), r -> {
+            Thread t = new Thread(r, "BulkSolver");
+            t.setDaemon(true);
+            return t;
+        });
+        solvers = ThreadLocal.withInitial(() -> {
+            SudokuSolver solver = new SudokuSolver();
+            solver.setTimeBudget(timeBudget);
+            return solver;
+        });
+    }
+
+    /**
+     * @return The most sudokus on their way at once.
+     */
+    public int getWindow() {
+        return window;
+    }
+
+    /**
+     * Sets the highest number of solutions
+     * {@link Mode#COUNT} looks for, 2 by default.
+     *
+     * @param limit The limit.
+     */
+    public void setLimit(int limit) {
+        this.limit = Math.max(limit, 1);
+    }
+
+    /**
+     * Solves every sudoku of the input and writes
+     * the results in the same order. Returns at
+     * the end of the input, once all results
+     * are written.
+     *
+     * @param in  The sudokus.
+     * @param out The results.
+     * @return The number of sudokus.
+     * @throws IOException          If reading or writing fails.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    public long solve(SudokuReader in, Writer out) throws IOException, InterruptedException {
+        long read = 0;
+        long written = 0;
+        while (true) {
+            byte[] field = new byte[FIELD_COUNT];
+            boolean valid;
+            try {
+                if (!in.next(field))
+                    break;
+                valid = true;
+            } catch (ValueFormatException e) {
+                valid = false;
+            }
+            // A full window waits for its oldest sudoku.
+            if (read - written == window)
+                write(out, written++, true);
+            if (valid)
+                submit(read++, field);
+            else
+                put(read++, INVALID);
+            while (written < read && write(out, written, false))
+                written++;
+        }
+        while (written < read)
+            write(out, written++, true);
+        out.flush();
+        return read;
+    }
+
+    /**
+     * Hands the sudoku to a worker.
+     *
+     * @param n     The number of the sudoku.
+     * @param field The field.
+     */
+    private void submit(long n, byte[] field) {
+        workers.execute(() -> {
+            String result;
+            try {
+                result = solve(field);
+            } catch (RuntimeException e) {
+                // An empty slot would stop the output forever.
+                e.printStackTrace();
+                result = INVALID;
+            }
+            put(n, result);
+        });
+    }
+
+    /**
+     * Puts a result into the reorder buffer.
+     *
+     * @param n      The number of the sudoku.
+     * @param result The result.
+     */
+    private void put(long n, String result) {
+        synchronized (slots) {
+            slots[(int) (n % window)] = result;
+            slots.notifyAll();
+        }
+    }
+
+    /**
+     * Writes the result of a sudoku,
+     * if it is already there.
+     *
+     * @param out  The results.
+     * @param n    The number of the sudoku.
+     * @param wait True to wait for the result.
+     * @return True if it was written.
+     */
+    private boolean write(Writer out, long n, boolean wait) throws IOException, InterruptedException {
+        String result;
+        synchronized (slots) {
+            int slot = (int) (n % window);
+            while (wait && slots[slot] == null)
+                slots.wait();
+            result = slots[slot];
+            slots[slot] = null;
+        }
+        if (result == null)
+            return false;
+        out.write(result);
+        out.write('\n');
+        return true;
+    }
+
+    /**
+     * Solves one sudoku with the solver of the thread.
+     *
+     * @param field The field.
+     * @return The result for the output.
+     */
+    private String solve(byte[] field) {
+        try {
+            if (!isValid(field))
+                return INVALID;
+            Sudoku su = new Sudoku(Level.None, field);
+            SudokuSolver solver = solvers.get();
+            if (mode == Mode.COUNT) {
+                int count = solver.countSolutions(su, limit);
+                return solver.getStopReason() == StopReason.FINISHED
+                        || solver.getStopReason() == StopReason.SOLUTION_LIMIT ? Integer.toString(count) : TIMEOUT;
+            }
+            Sudoku solution = solver.solve(su);
+            if (solution != null)
+                return solution.toLine();
+            return solver.getStopReason() == StopReason.FINISHED ? NONE : TIMEOUT;
+        } catch (ValueFormatException e) {
+            return INVALID;
+        }
+    }
+
+    /**
+     * @param field The field.
+     * @return False if a number is
+     * twice in a row, column or block.
+     */
+    private static boolean isValid(byte[] field) {
+        for (int i = 0; i < FIELD_COUNT; i++)
+            if (field[i] != NAN)
+                for (int p = i * PEER_COUNT; p < (i + 1) * PEER_COUNT; p++)
+                    if (field[PEERS[p]] == field[i])
+                        return false;
+        return true;
+    }
+
+    /**
+     * Stops the workers.
+     */
+    @Override
+    public void close() {
+        workers.shutdownNow();
+    }
+}
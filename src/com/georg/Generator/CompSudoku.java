@@ -29,9 +29,16 @@ import com.georg.Sudoku;
 import com.georg.ValueFormatException;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 
+import static com.georg.FieldTables.BOX_OF;
+import static com.georg.FieldTables.COL_OF;
+import static com.georg.FieldTables.ROW_OF;
+import static com.georg.FieldTables.UNIT_CELLS;
+import static com.georg.FieldTables.blockUnit;
+import static com.georg.FieldTables.colUnit;
+import static com.georg.FieldTables.rowUnit;
+
 /**
  * Created by Georg on 30/05/16.
  * <p>
@@ -47,13 +54,63 @@ public class CompSudoku extends Sudoku {
      * than Easy but also for {@link SudokuSolver}.
      */
     private int index = 0;
+    /**
+     * The candidate masks of every row, column
+     * and block. Bit <b>n</b> is set, if the
+     * number <b>n+1</b> is already used in the
+     * unit. They are kept up to date with every
+     * change on the field, so the candidates of
+     * a field are just one OR away.
+     *
+     * @see #getCandidates(int)
+     */
+    private int[] rowMask, colMask, blockMask;
+    /**
+     * The number of givens in every row and
+     * column, kept up to date like the masks.
+     */
+    private int[] rowGivens, colGivens;
+    /**
+     * The total number of givens.
+     */
+    private int givens;
+    /**
+     * The free fields as bit set. Bit <b>i</b> of
+     * {@link #freeLow} is the index <b>i</b>, bit
+     * <b>i</b> of {@link #freeHigh} the index <b>i+64</b>.
+     * Finds the next free field without a scan.
+     */
+    private long freeLow, freeHigh;
 
     CompSudoku(Level l) {
         super(l);
+        initCounters();
     }
 
-    private CompSudoku(Level l, byte[] field) throws ValueFormatException {
-        super(l, field);
+    private CompSudoku(Level l, byte[] field, Sudoku solution) throws ValueFormatException {
+        super(l, field, solution);
+        initCounters();
+        for (int i = 0; i < FIELD_COUNT; i++) {
+            if (this.field[i] != NAN) {
+                addMask(i, this.field[i]);
+                countGiven(i, 1);
+            }
+        }
+    }
+
+    /**
+     * Creates the masks and counters
+     * for an empty field.
+     */
+    private void initCounters() {
+        rowMask = new int[FIELD_SIZE];
+        colMask = new int[FIELD_SIZE];
+        blockMask = new int[FIELD_SIZE];
+        rowGivens = new int[FIELD_SIZE];
+        colGivens = new int[FIELD_SIZE];
+        givens = 0;
+        freeLow = -1L;
+        freeHigh = (1L << (FIELD_COUNT - 64)) - 1;
     }
 
     /**
@@ -64,7 +121,7 @@ public class CompSudoku extends Sudoku {
      * @param sudoku The sudoku.
      */
     public CompSudoku(Sudoku sudoku) throws ValueFormatException {
-        this(sudoku.getDifficulty(), sudoku.getField());
+        this(sudoku.getDifficulty(), sudoku.getField(), sudoku.getSolution());
         moveNext();
     }
 
@@ -74,10 +131,18 @@ public class CompSudoku extends Sudoku {
      *
      * @param sudoku The sudoku.
      */
-    @SuppressWarnings("unused")
     private CompSudoku(CompSudoku sudoku) throws ValueFormatException {
-        this(sudoku.getDifficulty(), sudoku.getField().clone());
+        super(sudoku.getDifficulty(), sudoku.field, sudoku.solution);
         index = sudoku.index;
+        // The masks and counts are copied, there is no need to rescan the field.
+        rowMask = sudoku.rowMask.clone();
+        colMask = sudoku.colMask.clone();
+        blockMask = sudoku.blockMask.clone();
+        rowGivens = sudoku.rowGivens.clone();
+        colGivens = sudoku.colGivens.clone();
+        givens = sudoku.givens;
+        freeLow = sudoku.freeLow;
+        freeHigh = sudoku.freeHigh;
     }
 
     /**
@@ -91,6 +156,121 @@ public class CompSudoku extends Sudoku {
         return x + FIELD_SIZE * y;
     }
 
+    /**
+     * Marks the value as used in the row,
+     * column and block of the index.
+     *
+     * @param index The index.
+     * @param value The value [1, {@link #MAX_NUM}].
+     */
+    private void addMask(int index, byte value) {
+        int bit = 1 << (value - 1);
+        rowMask[ROW_OF[index]] |= bit;
+        colMask[COL_OF[index]] |= bit;
+        blockMask[BOX_OF[index]] |= bit;
+    }
+
+    /**
+     * Rebuilds the masks of the row, column and
+     * block of the index from the field. Is used
+     * when a value is removed, because a field
+     * typed in by the user can hold the same
+     * number twice in one unit and a simple
+     * bit clear would forget the second one.
+     *
+     * @param index The index.
+     */
+    private void rebuildMask(int index) {
+        int row = ROW_OF[index], col = COL_OF[index], block = BOX_OF[index];
+        int r = 0, c = 0, b = 0;
+        int rowStart = rowUnit(row) * FIELD_SIZE, colStart = colUnit(col) * FIELD_SIZE, blockStart = blockUnit(block) * FIELD_SIZE;
+        for (int i = 0; i < FIELD_SIZE; i++) {
+            byte f = field[UNIT_CELLS[rowStart + i]];
+            if (f != NAN)
+                r |= 1 << (f - 1);
+            f = field[UNIT_CELLS[colStart + i]];
+            if (f != NAN)
+                c |= 1 << (f - 1);
+            f = field[UNIT_CELLS[blockStart + i]];
+            if (f != NAN)
+                b |= 1 << (f - 1);
+        }
+        rowMask[row] = r;
+        colMask[col] = c;
+        blockMask[block] = b;
+    }
+
+    /**
+     * Writes the value into the field and
+     * keeps the masks up to date.
+     *
+     * @param index The index.
+     * @param value The new value, can be {@link #NAN}.
+     */
+    private void put(int index, byte value) {
+        byte old = field[index];
+        field[index] = value;
+        if (old != NAN)
+            rebuildMask(index);
+        if (value != NAN)
+            addMask(index, value);
+        if ((old == NAN) != (value == NAN))
+            countGiven(index, value == NAN ? -1 : 1);
+    }
+
+    /**
+     * Updates the givens counts and the
+     * free field set of an index.
+     *
+     * @param index The index.
+     * @param delta 1 if the field got a value,
+     *              -1 if it got free.
+     */
+    private void countGiven(int index, int delta) {
+        givens += delta;
+        rowGivens[ROW_OF[index]] += delta;
+        colGivens[COL_OF[index]] += delta;
+        if (index < 64)
+            freeLow ^= 1L << index;
+        else
+            freeHigh ^= 1L << (index - 64);
+    }
+
+    /**
+     * Finds the next free field with the
+     * free field bit set.
+     *
+     * @param from The first index to look at.
+     * @return The next free index, -1 if
+     * there is none.
+     */
+    private int nextFree(int from) {
+        if (from < 64) {
+            long low = freeLow & (-1L << from);
+            if (low != 0)
+                return Long.numberOfTrailingZeros(low);
+            from = 64;
+        }
+        long high = freeHigh & (-1L << (from - 64));
+        return high != 0 ? 64 + Long.numberOfTrailingZeros(high) : -1;
+    }
+
+    /**
+     * Returns the candidates of an index
+     * as a bit mask. Bit <b>n</b> is set, if
+     * the number <b>n+1</b> is not used in
+     * the row, column or block of the index.
+     * The value on the index itself is
+     * ignored, so this should be used on
+     * free fields.
+     *
+     * @param index The index.
+     * @return The candidate mask.
+     */
+    int getCandidates(int index) {
+        return ~(rowMask[ROW_OF[index]] | colMask[COL_OF[index]] | blockMask[BOX_OF[index]]) & ((1 << MAX_NUM) - 1);
+    }
+
     /**
      * Returns the current value on the
      * current index.
@@ -112,8 +292,10 @@ public class CompSudoku extends Sudoku {
      */
     void swapIndex(int i1, int i2) {
         byte tmp = field[i1];
-        field[i1] = field[i2];
-        field[i2] = tmp;
+        put(i1, (byte) NAN);
+        put(i1, field[i2]);
+        put(i2, (byte) NAN);
+        put(i2, tmp);
     }
 
     /**
@@ -121,9 +303,9 @@ public class CompSudoku extends Sudoku {
      * free field.
      */
     private void moveNext() {
-        while (field[index] != NAN && !isIndexLast())
-            moveIndex();
-
+        int next = nextFree(index);
+        if (next >= 0)
+            index = next;
     }
 
     /**
@@ -131,20 +313,7 @@ public class CompSudoku extends Sudoku {
      * last free one, if else than false.
      */
     boolean isIndexLast() {
-        for (int i = index; i < FIELD_COUNT; i++) {
-            if (field[i] == NAN)
-                return false;
-        }
-        return true;
-    }
-
-    /**
-     * Move the index by one field.
-     * Save.
-     */
-    private void moveIndex() {
-        if (index < (FIELD_COUNT - 1))
-            index++;
+        return nextFree(index) < 0;
     }
 
     /**
@@ -180,17 +349,14 @@ public class CompSudoku extends Sudoku {
      * could be childs from the local index.
      */
     List<CompSudoku> expand() throws ValueFormatException {
-        /* All numbers. Create boolean vector,
-         * where each index represents a
-         * number that is equal to the index+1.
+        /* All numbers. Each bit represents a
+         * number that is equal to the bit+1.
          */
-        Boolean[] possible = new Boolean[MAX_NUM];
-        Arrays.fill(possible, true);
-        possible = rule_3(rule_2(rule_1(possible)));
+        int possible = getCandidates(index);
 
-        List<CompSudoku> ret = new ArrayList<>();
+        List<CompSudoku> ret = new ArrayList<>(Integer.bitCount(possible));
         for (byte i = 1; i <= MAX_NUM; i++) {
-            if (possible[i - 1]) {
+            if ((possible & (1 << (i - 1))) != 0) {
                 CompSudoku c = new CompSudoku(this);
                 c.setField(i);
                 c.resetIndex();
@@ -208,80 +374,27 @@ public class CompSudoku extends Sudoku {
      * at the current index.
      */
     public List<Byte> getAvailable() {
-        /* All numbers. Create boolean vector,
-         * where each index represents a
-         * number that is equal to the index+1.
+        /* All numbers. Each bit represents a
+         * number that is equal to the bit+1.
          */
-        Boolean[] possible = new Boolean[MAX_NUM];
-        Arrays.fill(possible, true);
-        possible = rule_3(rule_2(rule_1(possible)));
+        int possible = getCandidates(index);
 
-        List<Byte> ret = new ArrayList<>();
+        List<Byte> ret = new ArrayList<>(Integer.bitCount(possible));
         for (byte i = 1; i <= MAX_NUM; i++) {
-            // Only if True at pos (i-1), this number
+            // Only if the bit (i-1) is set, this number
             // is available for the position.
-            if (possible[i - 1])
+            if ((possible & (1 << (i - 1))) != 0)
                 ret.add(i);
         }
         return ret;
     }
 
     /**
-     * Rule one is the first rule for solving sudokus named in
-     * the paper. In this case it is that there cannot be
-     * any double numbers in a row.
-     *
-     * @param possible the number variable. From 1 to 9, where false
-     *                 marks not available anymore and true marks the
-     *                 opposite.
-     * @return returns the edited, now valid number variable. See input.
-     */
-    private Boolean[] rule_1(Boolean[] possible) {
-        for (int i = 0; i < FIELD_SIZE; i++) {
-            byte f = field[i + index / FIELD_SIZE * FIELD_SIZE];
-            if (f != NAN)
-                possible[f - 1] = false;
-        }
-        return possible;
-    }
-
-    /**
-     * Rule one is the second rule for solving sudokus named in
-     * the paper. In this case there cannot be a double number
-     * in a column.
-     *
-     * @param possible the number variable. From 1 to 9, where false
-     *                 marks not available anymore and true marks the
-     *                 opposite.
-     * @return returns the edited, now valid number variable. See input.
-     */
-    private Boolean[] rule_2(Boolean[] possible) {
-        for (int i = 0; i < FIELD_SIZE; i++) {
-            byte f = field[i * FIELD_SIZE + index % FIELD_SIZE];
-            if (f != NAN)
-                possible[f - 1] = false;
-        }
-        return possible;
-    }
-
-    /**
-     * Rule one is the third rule for solving sudokus named in
-     * the paper. In this case there cannot be a double number
-     * in a block.
-     *
-     * @param possible the number variable. From 1 to 9, where false
-     *                 marks not available anymore and true marks the
-     *                 opposite.
-     * @return returns the edited, now valid number variable. See input.
+     * @return The number of possible values
+     * at the position of the local index.
      */
-    private Boolean[] rule_3(Boolean[] possible) {
-        for (int i = 0; i < FIELD_SIZE; i++) {
-            byte f = field[i % BLOCK_SIZE + (i / BLOCK_SIZE) * FIELD_SIZE
-                    + (index % FIELD_SIZE) / BLOCK_SIZE * BLOCK_SIZE + index / (FIELD_SIZE * BLOCK_SIZE) * (FIELD_SIZE * BLOCK_SIZE)];
-            if (f != NAN)
-                possible[f - 1] = false;
-        }
-        return possible;
+    int getNumAvailable() {
+        return Integer.bitCount(getCandidates(index));
     }
 
     /**
@@ -289,11 +402,7 @@ public class CompSudoku extends Sudoku {
      * fields. Also called "givens".
      */
     int getNumTotalFields() {
-        int count = 0;
-        for (byte f : field)
-            if (f != NAN)
-                count++;
-        return count;
+        return givens;
     }
 
     /**
@@ -302,18 +411,8 @@ public class CompSudoku extends Sudoku {
      */
     int getLowerBoundRC() {
         int lowerBound = FIELD_SIZE;
-        for (int i = 0; i < FIELD_SIZE; i++) {
-            int countR = 0, countC = 0;
-            for (int j = 0; j < FIELD_SIZE; j++) {
-                if (field[i * FIELD_SIZE + j] != NAN)
-                    countR++;
-                if (field[j * FIELD_SIZE + i] != NAN)
-                    countC++;
-            }
-            lowerBound = Math.min(Math.min(countC, countR), lowerBound);
-            if (lowerBound == 0)
-                break;
-        }
+        for (int i = 0; i < FIELD_SIZE; i++)
+            lowerBound = Math.min(Math.min(rowGivens[i], colGivens[i]), lowerBound);
         return lowerBound;
     }
 
@@ -326,12 +425,38 @@ public class CompSudoku extends Sudoku {
      * @return The cloned, edited sudoku.
      */
     public CompSudoku digClone(int index) throws ValueFormatException {
-        CompSudoku ret = new CompSudoku(this);
-        ret.field[index] = NAN;
-        ret.setIndex(index);
+        CompSudoku ret = copy();
+        ret.dig(index);
         return ret;
     }
 
+    /**
+     * Empties the field at the index, like
+     * {@link #digClone(int)} without the copy.
+     *
+     * @param index The index.
+     */
+    void dig(int index) {
+        put(index, (byte) NAN);
+        setIndex(index);
+    }
+
+    /**
+     * @return A copy, with its own field and counters.
+     */
+    CompSudoku copy() throws ValueFormatException {
+        return new CompSudoku(this);
+    }
+
+    /**
+     * Sets the known solution of the field.
+     *
+     * @param solution The solution, can be null.
+     */
+    void setSolution(Sudoku solution) {
+        this.solution = solution;
+    }
+
     /**
      * Editable.
      *
@@ -348,7 +473,7 @@ public class CompSudoku extends Sudoku {
      * @param value The value.
      */
     void setField(byte value) {
-        field[index] = value;
+        put(index, value);
     }
 
     /**
@@ -0,0 +1,342 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 Georg A. Friedrich
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.georg.Generator;
+
+import com.georg.Sudoku;
+import com.georg.ValueFormatException;
+
+import static com.georg.FieldTables.BOX_OF;
+import static com.georg.FieldTables.COL_OF;
+import static com.georg.FieldTables.ROW_OF;
+import static com.georg.Sudoku.*;
+
+//@formatter:off
+/**
+ * A second engine to solve sudokus. It treats the
+ * sudoku as an exact cover problem and solves it
+ * with Knuth's Algorithm X on Dancing Links.
+ * <p>
+ * Every candidate (field, number) is a row of the
+ * matrix and covers four of the 324 constraints:
+ * <pre><code>
+ *   0 -  80  the field has a number
+ *  81 - 161  the row has the number
+ * 162 - 242  the column has the number
+ * 243 - 323  the block has the number
+ * </code></pre>
+ * The links are plain int arrays. The whole matrix
+ * is built once and copied for every new sudoku.
+ * <p>
+ * Opposite to the depth first search a field with
+ * the same number twice in one unit has no solution.
+ */
+//@formatter:on
+public class DancingLinksSolver {
+    /**
+     * The number of constraints (columns).
+     */
+    private static final int COLUMNS = 4 * FIELD_COUNT;
+    /**
+     * The number of candidates (rows).
+     */
+    private static final int ROWS = FIELD_COUNT * MAX_NUM;
+    /**
+     * Root, column headers and four nodes per row.
+     */
+    private static final int NODES = 1 + COLUMNS + 4 * ROWS;
+    /**
+     * The links of the empty matrix. Left, right,
+     * up, down and the column of every node.
+     */
+    private static final int[] L0 = new int[NODES], R0 = new int[NODES], U0 = new int[NODES], D0 = new int[NODES], C0 = new int[NODES];
+    /**
+     * The size of every column in the empty matrix.
+     */
+    private static final int[] S0 = new int[COLUMNS + 1];
+    /**
+     * The candidate of every node,
+     * encoded as index * MAX_NUM + number - 1.
+     */
+    private static final int[] CANDIDATE = new int[NODES];
+
+    static {
+        // The root (0) and the headers (1..COLUMNS) in one ring.
+        for (int c = 0; c <= COLUMNS; c++) {
+            L0[c] = c == 0 ? COLUMNS : c - 1;
+            R0[c] = c == COLUMNS ? 0 : c + 1;
+            U0[c] = c;
+            D0[c] = c;
+            C0[c] = c;
+        }
+
+        int node = COLUMNS + 1;
+        for (int i = 0; i < FIELD_COUNT; i++) {
+            for (int n = 0; n < MAX_NUM; n++) {
+                int[] columns = {
+                        1 + i,
+                        1 + FIELD_COUNT + ROW_OF[i] * MAX_NUM + n,
+                        1 + 2 * FIELD_COUNT + COL_OF[i] * MAX_NUM + n,
+                        1 + 3 * FIELD_COUNT + BOX_OF[i] * MAX_NUM + n};
+                int first = node;
+                for (int c : columns) {
+                    // Append at the bottom of the column.
+                    C0[node] = c;
+                    U0[node] = U0[c];
+                    D0[node] = c;
+                    D0[U0[c]] = node;
+                    U0[c] = node;
+                    S0[c]++;
+                    // Link into the ring of the row.
+                    L0[node] = node == first ? first + 3 : node - 1;
+                    R0[node] = node == first + 3 ? first : node + 1;
+                    CANDIDATE[node] = i * MAX_NUM + n;
+                    node++;
+                }
+            }
+        }
+    }
+
+    private final int[] L = new int[NODES], R = new int[NODES], U = new int[NODES], D = new int[NODES];
+    private final int[] S = new int[COLUMNS + 1];
+    /**
+     * The selected rows, givens first.
+     */
+    private final int[] chosen = new int[FIELD_COUNT];
+    private int depth;
+    /**
+     * False if the givens break a rule.
+     */
+    private boolean valid;
+    /**
+     * The last found solution, only written if
+     * {@link #record} is true.
+     */
+    private final byte[] solution = new byte[FIELD_COUNT];
+    private boolean record;
+    /**
+     * The number of found solutions.
+     */
+    private int found;
+
+    /**
+     * Creates a solver for the sudoku.
+     *
+     * @param sudoku The sudoku.
+     */
+    DancingLinksSolver(Sudoku sudoku) {
+        load(sudoku);
+    }
+
+    /**
+     * Resets the matrix and selects
+     * the givens of the sudoku.
+     *
+     * @param sudoku The sudoku.
+     */
+    void load(Sudoku sudoku) {
+        System.arraycopy(L0, 0, L, 0, NODES);
+        System.arraycopy(R0, 0, R, 0, NODES);
+        System.arraycopy(U0, 0, U, 0, NODES);
+        System.arraycopy(D0, 0, D, 0, NODES);
+        System.arraycopy(S0, 0, S, 0, COLUMNS + 1);
+        depth = 0;
+        valid = true;
+
+        for (int i = 0; i < FIELD_COUNT && valid; i++) {
+            byte f = sudoku.getAtIndex(i);
+            if (f == NAN)
+                continue;
+            int row = COLUMNS + 1 + 4 * (i * MAX_NUM + f - 1);
+            for (int j = row; j < row + 4; j++) {
+                // A covered column is no longer in the header ring.
+                if (R[L[C0[j]]] != C0[j]) { // Same number twice in one unit.
+                    valid = false;
+                    break;
+                }
+            }
+            if (valid) {
+                for (int j = row; j < row + 4; j++)
+                    cover(C0[j]);
+                chosen[depth++] = row;
+            }
+        }
+    }
+
+    /**
+     * Removes the column from the header ring
+     * and all its rows from the other columns.
+     *
+     * @param c The column.
+     */
+    private void cover(int c) {
+        L[R[c]] = L[c];
+        R[L[c]] = R[c];
+        for (int i = D[c]; i != c; i = D[i]) {
+            for (int j = R[i]; j != i; j = R[j]) {
+                U[D[j]] = U[j];
+                D[U[j]] = D[j];
+                S[C0[j]]--;
+            }
+        }
+    }
+
+    /**
+     * Exactly reverts {@link #cover(int)}.
+     *
+     * @param c The column.
+     */
+    private void uncover(int c) {
+        for (int i = U[c]; i != c; i = U[i]) {
+            for (int j = L[i]; j != i; j = L[j]) {
+                S[C0[j]]++;
+                U[D[j]] = j;
+                D[U[j]] = j;
+            }
+        }
+        L[R[c]] = c;
+        R[L[c]] = c;
+    }
+
+    /**
+     * Algorithm X. Always branches on the
+     * column with the fewest rows.
+     *
+     * @param limit Stop after this many solutions.
+     * @return True if the limit is reached.
+     */
+    private boolean search(int limit, SearchBudget budget) {
+        if (budget.exhausted())
+            return true;
+        if (R[0] == 0) {
+            found++;
+            if (record)
+                for (int i = 0; i < depth; i++)
+                    solution[CANDIDATE[chosen[i]] / MAX_NUM] = (byte) (CANDIDATE[chosen[i]] % MAX_NUM + 1);
+            return found >= limit;
+        }
+
+        int c = R[0];
+        for (int j = R[c]; j != 0; j = R[j])
+            if (S[j] < S[c])
+                c = j;
+        if (S[c] == 0)
+            return false;
+
+        boolean stop = false;
+        cover(c);
+        for (int r = D[c]; r != c && !stop; r = D[r]) {
+            chosen[depth++] = r;
+            for (int j = R[r]; j != r; j = R[j])
+                cover(C0[j]);
+            stop = search(limit, budget);
+            for (int j = L[r]; j != r; j = L[j])
+                uncover(C0[j]);
+            depth--;
+        }
+        uncover(c);
+        return stop;
+    }
+
+    /**
+     * Counts the solutions of the loaded sudoku.
+     *
+     * @param limit  Stop counting at this number.
+     * @param record True if the last found solution
+     *               should be kept.
+     * @param budget The started budget of the search.
+     * @return The number of solutions, at most limit.
+     */
+    int count(int limit, boolean record, SearchBudget budget) {
+        found = 0;
+        this.record = record;
+        if (valid && limit > 0) {
+            int start = depth;
+            search(limit, budget);
+            depth = start;
+        }
+        return found;
+    }
+
+    /**
+     * Counts without any budget.
+     *
+     * @param limit  Stop counting at this number.
+     * @param record True if the last found solution
+     *               should be kept.
+     * @return The number of solutions, at most limit.
+     */
+    private int count(int limit, boolean record) {
+        SearchBudget budget = new SearchBudget();
+        budget.start(Long.MAX_VALUE, Long.MAX_VALUE);
+        return count(limit, record, budget);
+    }
+
+    /**
+     * @return The last solution found by a
+     * count that kept its solutions.
+     */
+    byte[] getSolution() {
+        return solution;
+    }
+
+    /**
+     * Find number of solutions for given sudoku.
+     *
+     * @param sudoku The sudoku to solve.
+     * @return Returns number of solutions.
+     */
+    public static int solutions(Sudoku sudoku) {
+        return new DancingLinksSolver(sudoku).count(Integer.MAX_VALUE, false);
+    }
+
+    /**
+     * Gives an answer to the question:
+     * "Is the sudoku solvable."
+     *
+     * @param sudoku The sudoku to evaluate.
+     * @return True if the sudoku is solvable.
+     */
+    public static boolean isSolvable(Sudoku sudoku) {
+        return new DancingLinksSolver(sudoku).count(1, false) > 0;
+    }
+
+    /**
+     * Looks for solutions until the maximum number
+     * is reached and returns the last one found.
+     * This is the search behind
+     * {@link SudokuSolver#DFSLV(Sudoku, long, int, int)}.
+     *
+     * @param sudoku The sudoku to solve.
+     * @param maxSol The maximum number of solutions,
+     *               till the search stops.
+     * @return The last found solution, null if there is none.
+     */
+    public static Sudoku solve(Sudoku sudoku, int maxSol) throws ValueFormatException {
+        DancingLinksSolver dlx = new DancingLinksSolver(sudoku);
+        if (dlx.count(Math.max(maxSol, 1), true) == 0)
+            return null;
+        return new Sudoku(sudoku.getDifficulty(), dlx.solution);
+    }
+}
@@ -0,0 +1,411 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 Georg A. Friedrich
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.georg.Generator;
+
+import com.georg.Level;
+import com.georg.Sudoku;
+import com.georg.ValueFormatException;
+import it.unimi.dsi.util.XoRoShiRo128PlusRandom;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+//@formatter:off
+/**
+ * Generates sudokus of one level on many threads.
+ * The steps of the {@link StaticGenerator} run as
+ * stages, connected by bounded queues:
+ * <pre><code>
+ * +-----------+  terminals  +-----------+   dug   +---------------+  finished
+ * | patterns  +------------>|  digging  +-------->| propagation & +----------->
+ * | 1 thread  |             | n workers |         |  validation   |
+ * +-----------+             +-----------+         +---------------+
+ * </code></pre>
+ * A full queue blocks the stage before it, so the
+ * pipeline stops by itself once enough finished
+ * sudokus wait to be taken.
+ * <p>
+ * A job that fails is printed and dropped, the
+ * stage goes on with the next one. If a stage
+ * dies anyway, f.E. of an {@link Error}, no more
+ * sudokus come, so waiting for them fails at once.
+ */
+//@formatter:on
+public class GenerationPipeline implements AutoCloseable {
+    /**
+     * The default capacity of every queue.
+     */
+    public static final int DEFAULT_CAPACITY = 64;
+
+    private final Level level;
+    private final int workers;
+    private final TerminalPatternFactory factory;
+    private final Random rand;
+    private final BlockingQueue<Job> terminals;
+    private final BlockingQueue<Job> dug;
+    private final BlockingQueue<Sudoku> finished;
+    private final List<Thread> threads = new ArrayList<>();
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private volatile boolean closed;
+    /**
+     * The cause of death of a stage, null while all run.
+     */
+    private volatile Throwable failure;
+
+    /**
+     * Creates a pipeline with queues
+     * of the {@link #DEFAULT_CAPACITY}.
+     *
+     * @param l       The level of the sudokus.
+     * @param workers The number of digging threads.
+     * @throws ValueFormatException If the level
+     *                              can not be generated.
+     */
+    public GenerationPipeline(Level l, int workers) throws ValueFormatException {
+        this(l, workers, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param l        The level of the sudokus.
+     * @param workers  The number of digging threads.
+     * @param capacity The capacity of every queue.
+     * @throws ValueFormatException If the level
+     *                              can not be generated.
+     */
+    public GenerationPipeline(Level l, int workers, int capacity) throws ValueFormatException {
+        this(l, workers, capacity, TerminalPatternFactory.getShared(), new XoRoShiRo128PlusRandom());
+    }
+
+    /**
+     * Creates a pipeline with seeded random generators.
+     * Every terminal pattern and its sudoku is the same
+     * for the same seed. With one worker the sudokus also
+     * come in the same order, with more they are
+     * finished in the order the workers are done.
+     *
+     * @param l        The level of the sudokus.
+     * @param workers  The number of digging threads.
+     * @param capacity The capacity of every queue.
+     * @param seed     The seed.
+     * @throws ValueFormatException If the level
+     *                              can not be generated.
+     */
+    public GenerationPipeline(Level l, int workers, int capacity, long seed) throws ValueFormatException {
+        // The shared bank is filled by other threads, a seeded run needs its own.
+        this(l, workers, capacity, new TerminalPatternFactory(), new XoRoShiRo128PlusRandom(seed));
+    }
+
+    private GenerationPipeline(Level l, int workers, int capacity, TerminalPatternFactory factory, Random rand) throws ValueFormatException {
+        if (l.getMaxTotalGiven() < 0)
+            throw new ValueFormatException("Level " + l + " can not be generated");
+        level = l;
+        this.factory = factory;
+        this.rand = rand;
+        this.workers = Math.max(workers, 1);
+        terminals = new ArrayBlockingQueue<>(Math.max(capacity, 1));
+        dug = new ArrayBlockingQueue<>(Math.max(capacity, 1));
+        finished = new ArrayBlockingQueue<>(Math.max(capacity, 1));
+    }
+
+    /**
+     * @return The level of the sudokus.
+     */
+    public Level getLevel() {
+        return level;
+    }
+
+    /**
+     * Starts all threads. The threads
+     * are daemons with the given priority.
+     *
+     * @param priority The thread priority, f.E.
+     *                 {@link Thread#MIN_PRIORITY}
+     *                 for background work.
+     * @return This pipeline.
+     */
+    public synchronized GenerationPipeline start(int priority) {
+        if (!threads.isEmpty() || closed)
+            return this;
+        threads.add(stage("patterns", this::producePatterns));
+        for (int i = 0; i < workers; i++)
+            threads.add(stage("dig-" + i, this::digPatterns));
+        threads.add(stage("propagation", this::finishSudokus));
+        for (Thread t : threads) {
+            t.setPriority(priority);
+            t.start();
+        }
+        return this;
+    }
+
+    /**
+     * Starts all threads with normal priority.
+     *
+     * @return This pipeline.
+     */
+    public GenerationPipeline start() {
+        return start(Thread.NORM_PRIORITY);
+    }
+
+    /**
+     * @param name The name of the stage.
+     * @param work The loop of the stage.
+     * @return The thread for the stage.
+     */
+    private Thread stage(String name, Stage work) {
+        Thread t = new Thread(() -> {
+            try {
+                while (!closed)
+                    work.step();
+            } catch (InterruptedException ignored) {
+                // Closed while waiting.
+            } catch (RuntimeException | Error e) {
+                failure = e;
+                e.printStackTrace();
+            }
+        }, "GenerationPipeline-" + level + "-" + name);
+        t.setDaemon(true);
+        return t;
+    }
+
+    /**
+     * One step of a stage.
+     */
+    private interface Stage {
+        void step() throws InterruptedException;
+    }
+
+    /**
+     * A sudoku on its way through the stages,
+     * with the random generator for its later steps.
+     */
+    private static final class Job {
+        private final Sudoku sudoku;
+        private final Random rand;
+        /**
+         * When a worker took the terminal pattern, in ns.
+         */
+        private final long started;
+
+        private Job(Sudoku sudoku, Random rand, long started) {
+            this.sudoku = sudoku;
+            this.rand = rand;
+            this.started = started;
+        }
+    }
+
+    /**
+     * Stage 1: terminal patterns.
+     */
+    private void producePatterns() throws InterruptedException {
+        while (!closed) {
+            try {
+                Sudoku terminal = factory.next(level, rand);
+                terminals.put(new Job(terminal, new XoRoShiRo128PlusRandom(rand.nextLong()), 0));
+            } catch (ValueFormatException | RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Stage 2: digging the holes.
+     */
+    private void digPatterns() throws InterruptedException {
+        Job terminal = terminals.take();
+        long started = System.nanoTime();
+        try {
+            Sudoku su = StaticGenerator.digPattern(terminal.sudoku, level, 1, terminal.rand);
+            if (su != null)
+                dug.put(new Job(su, terminal.rand, started));
+        } catch (ValueFormatException | RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Stage 3: propagation and a last check,
+     * that the sudoku is unique and in the level.
+     */
+    private void finishSudokus() throws InterruptedException {
+        SudokuSolver solver = new SudokuSolver();
+        while (!closed) {
+            Job su = dug.take();
+            try {
+                Sudoku ret = StaticGenerator.propagate(su.sudoku, su.rand);
+                if (isValid(ret, solver)) {
+                    latency.record(System.nanoTime() - su.started);
+                    finished.put(ret);
+                }
+            } catch (ValueFormatException | RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * @param su     The sudoku.
+     * @param solver The solver for the check.
+     * @return True if the sudoku has one solution,
+     * it fits the known solution and its number of
+     * givens fits the level.
+     */
+    private boolean isValid(Sudoku su, SudokuSolver solver) throws ValueFormatException {
+        int givens = 0;
+        for (int i = 0; i < Sudoku.FIELD_COUNT; i++)
+            if (su.getAtIndex(i) != Sudoku.NAN)
+                givens++;
+        return givens <= level.getMaxTotalGiven()
+                && su.getSolution() != null && su.agreesWith(su.getSolution())
+                && solver.countSolutions(su, 2) == 1;
+    }
+
+    /**
+     * The time a sudoku takes through the pipeline,
+     * from the moment a worker takes its terminal
+     * pattern until it is finished. The time in the
+     * queues between the stages is counted, the wait
+     * in the queue of finished sudokus is not.
+     *
+     * @param percentile The percentile, f.E. 50 or 99.
+     * @return The time in ns below which the given
+     * percent of the finished sudokus took, 0 if
+     * none is finished yet.
+     */
+    public long getLatency(double percentile) {
+        return latency.getPercentile(percentile);
+    }
+
+    /**
+     * Waits for the next finished sudoku.
+     *
+     * @return The sudoku.
+     * @throws InterruptedException  If interrupted while waiting.
+     * @throws IllegalStateException If a stage died, so
+     *                               no sudoku would come.
+     */
+    public Sudoku take() throws InterruptedException {
+        Sudoku su;
+        while ((su = finished.poll(100, TimeUnit.MILLISECONDS)) == null)
+            checkFailure();
+        return su;
+    }
+
+    /**
+     * @throws IllegalStateException If a stage died.
+     */
+    private void checkFailure() {
+        Throwable cause = failure;
+        if (cause != null)
+            throw new IllegalStateException("A stage of the pipeline died", cause);
+    }
+
+    /**
+     * @return The next finished sudoku,
+     * null if none is ready.
+     */
+    public Sudoku poll() {
+        return finished.poll();
+    }
+
+    /**
+     * @return The number of finished
+     * sudokus ready to be taken.
+     */
+    public int getReady() {
+        return finished.size();
+    }
+
+    /**
+     * An endless iterator over the finished sudokus.
+     * {@link Iterator#next()} waits for the next one,
+     * it ends once the pipeline is closed. Both throw
+     * an {@link IllegalStateException} if a stage died.
+     *
+     * @return The iterator.
+     */
+    public Iterator<Sudoku> iterator() {
+        return new Iterator<Sudoku>() {
+            private Sudoku next;
+
+            @Override
+            public boolean hasNext() {
+                try {
+                    while (next == null && !closed) {
+                        next = finished.poll(100, TimeUnit.MILLISECONDS);
+                        if (next == null)
+                            checkFailure();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                if (next == null)
+                    next = finished.poll();
+                return next != null;
+            }
+
+            @Override
+            public Sudoku next() {
+                if (!hasNext())
+                    throw new NoSuchElementException("The pipeline is closed");
+                Sudoku ret = next;
+                next = null;
+                return ret;
+            }
+        };
+    }
+
+    /**
+     * An endless stream of finished sudokus,
+     * f.E. <code>pipeline.stream().limit(1000)</code>.
+     *
+     * @return The stream.
+     * @see #iterator()
+     */
+    public Stream<Sudoku> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator(),
+                Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    /**
+     * Stops all threads. The sudokus
+     * already finished can still be taken.
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        for (Thread t : threads)
+            t.interrupt();
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 Georg A. Friedrich
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.georg.Generator;
+
+import com.georg.Level;
+
+import java.util.EnumMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts per {@link Level} how many terminal
+ * patterns and dig attempts the
+ * {@link StaticGenerator} needs for its puzzles.
+ * All counters are atomic, the generator
+ * can run on many threads at once.
+ */
+public final class GenerationStatistics {
+    /**
+     * The statistics of every level.
+     * Filled once, only read afterwards.
+     */
+    private static final EnumMap<Level, GenerationStatistics> levels = new EnumMap<>(Level.class);
+
+    static {
+        for (Level l : Level.values())
+            levels.put(l, new GenerationStatistics(l));
+    }
+
+    /**
+     * The level of these statistics.
+     */
+    private final Level level;
+    /**
+     * The number of terminal patterns used.
+     */
+    private final AtomicLong patterns = new AtomicLong();
+    /**
+     * The number of times holes were dug.
+     */
+    private final AtomicLong attempts = new AtomicLong();
+    /**
+     * The number of dug puzzles that
+     * met the level and were returned.
+     */
+    private final AtomicLong accepted = new AtomicLong();
+
+    private GenerationStatistics(Level level) {
+        this.level = level;
+    }
+
+    /**
+     * @param l The level.
+     * @return The statistics of the level.
+     */
+    public static GenerationStatistics of(Level l) {
+        return levels.get(l);
+    }
+
+    /**
+     * Records a new terminal pattern.
+     */
+    void recordPattern() {
+        patterns.incrementAndGet();
+    }
+
+    /**
+     * Records one run of digging holes.
+     *
+     * @param ok True if the puzzle was accepted.
+     */
+    void recordAttempt(boolean ok) {
+        attempts.incrementAndGet();
+        if (ok)
+            accepted.incrementAndGet();
+    }
+
+    /**
+     * @return The number of terminal patterns used.
+     */
+    public long getPatterns() {
+        return patterns.get();
+    }
+
+    /**
+     * @return The number of times holes were dug.
+     */
+    public long getAttempts() {
+        return attempts.get();
+    }
+
+    /**
+     * @return The number of accepted puzzles.
+     */
+    public long getAccepted() {
+        return accepted.get();
+    }
+
+    /**
+     * @return The share of dig attempts that
+     * were accepted, 0 if there were none.
+     */
+    public double getAcceptanceRate() {
+        long a = attempts.get();
+        return a == 0 ? 0 : (double) accepted.get() / a;
+    }
+
+    /**
+     * Sets all counters back to zero.
+     */
+    public void reset() {
+        patterns.set(0);
+        attempts.set(0);
+        accepted.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d accepted of %d attempts (%.1f%%) on %d patterns",
+                level, getAccepted(), getAttempts(), getAcceptanceRate() * 100, getPatterns());
+    }
+}
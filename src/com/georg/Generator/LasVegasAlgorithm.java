@@ -30,6 +30,7 @@ import com.georg.ValueFormatException;
 import it.unimi.dsi.util.XoRoShiRo128PlusRandom;
 
 import java.util.List;
+import java.util.Random;
 
 import static com.georg.Sudoku.*;
 
@@ -41,6 +42,12 @@ import static com.georg.Sudoku.*;
  */
 @SuppressWarnings("WeakerAccess")
 public class LasVegasAlgorithm {
+    /**
+     * The most nodes one randomised descent may take.
+     * A descent takes about 35 nodes, up to 50.
+     */
+    private static final long MAX_NODES = 10000;
+
     /**
      * Las Vegas Algorithm for Sudoku generation.
      * With the findings from the paper named before,
@@ -49,16 +56,36 @@ public class LasVegasAlgorithm {
      * position on the field and will then solve and
      * return the solved state.
      * To have not repeating patterns in the first few
-     * lines, the code will return the last sudoku found
-     * in a given time. In this case 100ms.
+     * lines, the solver tries the candidates in a
+     * random order and returns the first solution.
      *
      * @param l The playing level.
      * @return Returns a terminal pattern.
      */
     public static Sudoku LasVegas(Level l) throws ValueFormatException {
-        // Faster random generator.
-        XoRoShiRo128PlusRandom rand = new XoRoShiRo128PlusRandom();
-        rand.setSeed(System.currentTimeMillis());
+        /* Faster random generator. Seeded by itself, a seed from
+         * the clock would give two threads the same patterns. */
+        return LasVegas(l, new XoRoShiRo128PlusRandom());
+    }
+
+    /**
+     * Las Vegas Algorithm with a given random
+     * generator, so the patterns can be repeated
+     * with a seeded generator.
+     *
+     * @param l    The playing level.
+     * @param rand The random generator.
+     * @return Returns a terminal pattern.
+     * @see #LasVegas(Level)
+     */
+    public static Sudoku LasVegas(Level l, Random rand) throws ValueFormatException {
+        SudokuSolver solver = new SudokuSolver();
+        /* The limit is there so that the algorithm here
+         * will produce results in an relative short amount of time,
+         * a bad start gets dropped and tried again. It counts nodes,
+         * not ms, so a seeded generator gives the same pattern on
+         * a busy machine. */
+        solver.setNodeBudget(MAX_NODES);
         while (true) {
             // Creates an empty sudoku field.
             CompSudoku terminal = new CompSudoku(l);
@@ -79,16 +106,8 @@ public class LasVegasAlgorithm {
             // Reset index to next free one, important for the solver to work.
             terminal.resetIndex();
 
-            /* Trigger the solving and limit the calculation
-             * time, but also choose randomly at which amount
-             * of found solutions it should stop. Gives the
-             * whole generated terminal pattern some randomness.
-             *
-             * The time limit is there so that the algorithm here
-             * will produce results in an relative short amount of time.
-             */
-            SudokuSolver.DFSLV(terminal, System.currentTimeMillis(), 200, rand.nextInt(10000));
-            Sudoku su = SudokuSolver.getLastField();
+            // One randomised descent gives the whole terminal pattern its randomness.
+            Sudoku su = solver.randomSolution(terminal, rand);
             // If Sudoku correctly finish the process.
             if (su != null)
                 return su;
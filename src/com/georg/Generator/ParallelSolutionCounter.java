@@ -0,0 +1,238 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 Georg A. Friedrich
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.georg.Generator;
+
+import com.georg.Sudoku;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.georg.Sudoku.FIELD_COUNT;
+
+/**
+ * Counts the solutions of a sudoku on all cores.
+ * <p>
+ * The search tree is split into subtrees near the
+ * root. Every subtree becomes a task on a
+ * {@link ForkJoinPool}, idle workers steal the
+ * open ones. A task only splits while its worker
+ * has few queued tasks left, so the tree is cut
+ * finer where the work is. The subtrees are searched
+ * in place like {@link SolverEngine#IN_PLACE} with
+ * propagation and the most constrained field first.
+ * <p>
+ * The counts of all subtrees are summed up exactly.
+ * All tasks share one running total, so the search
+ * stops everywhere once the limit is reached, or
+ * once {@link #cancel()} was called.
+ */
+public class ParallelSolutionCounter {
+    /**
+     * Tasks deeper than this are never split.
+     */
+    private static final int MAX_SPLIT_DEPTH = 16;
+    /**
+     * A task splits only while its worker has
+     * at most this many surplus tasks queued.
+     */
+    private static final int SURPLUS = 2;
+    /**
+     * The number of search nodes between two
+     * looks at the shared total.
+     */
+    private static final int CHECK_INTERVAL = 1024;
+
+    private final Sudoku sudoku;
+    private final long limit;
+    private final ForkJoinPool pool;
+    /**
+     * The solutions found so far by all tasks.
+     */
+    private final AtomicLong total = new AtomicLong();
+    private volatile boolean cancelled;
+
+    /**
+     * Creates a counter that runs on the
+     * common pool.
+     *
+     * @param sudoku The sudoku.
+     * @param limit  Stop counting at this number.
+     */
+    public ParallelSolutionCounter(Sudoku sudoku, long limit) {
+        this(sudoku, limit, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param sudoku The sudoku.
+     * @param limit  Stop counting at this number.
+     * @param pool   The pool to run on.
+     */
+    public ParallelSolutionCounter(Sudoku sudoku, long limit, ForkJoinPool pool) {
+        this.sudoku = sudoku;
+        this.limit = limit;
+        this.pool = pool;
+    }
+
+    /**
+     * Counts the solutions on the common pool.
+     *
+     * @param sudoku The sudoku.
+     * @param limit  Stop counting at this number.
+     * @return The number of solutions, at most limit.
+     */
+    public static long solutions(Sudoku sudoku, long limit) {
+        return new ParallelSolutionCounter(sudoku, limit).count();
+    }
+
+    /**
+     * Runs the count and waits for it.
+     * A counter can only be used once.
+     *
+     * @return The number of solutions, at most the limit.
+     * If the count was {@link #cancel() cancelled} the
+     * solutions found until then.
+     */
+    public long count() {
+        if (limit <= 0)
+            return 0;
+        byte[] field = sudoku.getField();
+        long count = pool.invoke(new CountTask(field, 0));
+        return Math.min(count, limit);
+    }
+
+    /**
+     * Stops all tasks of a running count.
+     * Can be called from any thread.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * @return True if {@link #cancel()} was called.
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * @return True if the tasks should stop.
+     */
+    private boolean stopped() {
+        return cancelled || total.get() >= limit;
+    }
+
+    /**
+     * One subtree of the search.
+     */
+    @SuppressWarnings("serial") // Tasks are never serialized.
+    private class CountTask extends RecursiveTask<Long> {
+        /**
+         * The field at the root of the subtree.
+         */
+        private final byte[] field;
+        private final int depth;
+        /**
+         * Solutions not yet added to {@link #total}.
+         */
+        private long pending;
+        /**
+         * Nodes left till the next look at the total.
+         */
+        private int countdown = CHECK_INTERVAL;
+        private boolean stop;
+
+        CountTask(byte[] field, int depth) {
+            this.field = field;
+            this.depth = depth;
+        }
+
+        @Override
+        protected Long compute() {
+            if (stopped())
+                return 0L;
+            SearchGrid grid = new SearchGrid();
+            grid.load(field);
+            if (!grid.propagate())
+                return 0L;
+
+            int index = grid.mostConstrained();
+            if (index >= 0 && depth < MAX_SPLIT_DEPTH && getSurplusQueuedTaskCount() <= SURPLUS) {
+                List<CountTask> tasks = new ArrayList<>();
+                int mark = grid.mark();
+                for (int possible = grid.getCandidates(index); possible != 0; possible &= possible - 1) {
+                    grid.place(index, possible & -possible);
+                    byte[] child = new byte[FIELD_COUNT];
+                    grid.copyTo(child);
+                    tasks.add(new CountTask(child, depth + 1));
+                    grid.undo(mark);
+                }
+                long sum = 0;
+                for (CountTask task : invokeAll(tasks))
+                    sum += task.join();
+                return sum;
+            }
+
+            long count = search(grid);
+            total.addAndGet(pending);
+            return count;
+        }
+
+        /**
+         * The sequential search of the subtree.
+         *
+         * @param grid The grid.
+         * @return The number of solutions found.
+         */
+        private long search(SearchGrid grid) {
+            if (--countdown == 0) {
+                countdown = CHECK_INTERVAL;
+                stop = total.addAndGet(pending) >= limit || cancelled;
+                pending = 0;
+            }
+            if (stop)
+                return 0;
+
+            int index = grid.mostConstrained();
+            if (index < 0) {
+                pending++;
+                return 1;
+            }
+
+            long sum = 0;
+            int mark = grid.mark();
+            for (int possible = grid.getCandidates(index); possible != 0 && !stop; possible &= possible - 1) {
+                grid.place(index, possible & -possible);
+                if (grid.propagate())
+                    sum += search(grid);
+                grid.undo(mark);
+            }
+            return sum;
+        }
+    }
+}
@@ -0,0 +1,360 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 Georg A. Friedrich
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.georg.Generator;
+
+import com.georg.Level;
+import com.georg.Sudoku;
+import com.georg.ValueFormatException;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Keeps generated sudokus of every level in
+ * stock, so a request is just a queue pop.
+ * <p>
+ * A daemon thread with the lowest priority refills
+ * every level that fell below the low water mark,
+ * until it is full again. If a level is empty, the
+ * sudoku is generated on the calling thread with
+ * all cores checking holes ahead.
+ * <p>
+ * With {@link #persist(Path, long)} the stock above
+ * the low water mark is moved into one {@link PuzzleStore}
+ * per level from time to time, all of it on shutdown.
+ * Sudokus on the disk are served first, so the stock in
+ * memory only falls below the low water mark and gets
+ * refilled once the disk is empty. A sudoku is either in
+ * memory or on the disk, never in both, so no sudoku
+ * is served twice.
+ */
+public class PuzzlePool implements AutoCloseable {
+    /**
+     * The default number of sudokus per level.
+     */
+    public static final int DEFAULT_CAPACITY = 16;
+    /**
+     * The default stock below which a level is refilled.
+     */
+    public static final int DEFAULT_LOW_WATER = 4;
+    /**
+     * The maximum number of sudokus per level on
+     * the disk. The disk is not filled on purpose,
+     * it only takes what is left in memory.
+     */
+    public static final int DISK_CAPACITY = 1000;
+
+    /**
+     * The pool of the GUI, created on first use.
+     */
+    private static PuzzlePool shared;
+
+    /**
+     * The sudokus ready per level.
+     * Filled once, only read afterwards.
+     */
+    private final EnumMap<Level, ArrayBlockingQueue<Sudoku>> stock = new EnumMap<>(Level.class);
+    /**
+     * The levels that are refilled till they are full.
+     * Guarded by the lock of this instance.
+     */
+    private final EnumMap<Level, Boolean> refilling = new EnumMap<>(Level.class);
+    /**
+     * The stores on the disk, null till {@link #persist(Path, long)}.
+     */
+    private volatile EnumMap<Level, PuzzleStore> stores;
+    private Timer saver;
+    /**
+     * Saves the stock when the JVM shuts down,
+     * removed again by {@link #close()}.
+     */
+    private Thread hook;
+    private final int lowWater;
+    private final Thread refill;
+    private volatile boolean closed;
+
+    /**
+     * Creates a pool with the default
+     * capacity and low water mark.
+     */
+    public PuzzlePool() {
+        this(DEFAULT_CAPACITY, DEFAULT_LOW_WATER);
+    }
+
+    /**
+     * Creates the pool and starts filling it.
+     *
+     * @param capacity The number of sudokus per level.
+     * @param lowWater The stock below which a level is refilled.
+     */
+    public PuzzlePool(int capacity, int lowWater) {
+        capacity = Math.max(capacity, 1);
+        this.lowWater = Math.min(Math.max(lowWater, 1), capacity);
+        for (Level l : Level.values()) {
+            // Level.None can not be generated.
+            if (l.getMaxTotalGiven() < 0)
+                continue;
+            stock.put(l, new ArrayBlockingQueue<>(capacity));
+            refilling.put(l, true);
+        }
+        refill = new Thread(this::refill, "PuzzlePool-refill");
+        refill.setDaemon(true);
+        refill.setPriority(Thread.MIN_PRIORITY);
+        refill.start();
+    }
+
+    /**
+     * @return The pool shared by the GUI.
+     */
+    public static synchronized PuzzlePool getShared() {
+        if (shared == null)
+            shared = new PuzzlePool();
+        return shared;
+    }
+
+    /**
+     * Takes a sudoku from the stock. If
+     * there is none it is generated now.
+     *
+     * @param l The level.
+     * @return A new sudoku of the level.
+     * @throws ValueFormatException If the level can not be generated.
+     */
+    public Sudoku take(Level l) throws ValueFormatException {
+        Sudoku su = poll(l);
+        if (su == null)
+            su = StaticGenerator.GenerateSudoku(l, Runtime.getRuntime().availableProcessors());
+        return su;
+    }
+
+    /**
+     * Takes a sudoku from the stock, from the disk
+     * first. Only the stock in memory is refilled,
+     * so the refill starts once the disk is empty
+     * and the memory fell below the low water mark,
+     * even though {@link #getStock(Level)} counts both.
+     *
+     * @param l The level.
+     * @return A sudoku of the level, null if
+     * there is none in stock.
+     * @throws ValueFormatException If the level can not be generated.
+     */
+    public Sudoku poll(Level l) throws ValueFormatException {
+        ArrayBlockingQueue<Sudoku> queue = stock.get(l);
+        if (queue == null)
+            throw new ValueFormatException("Level " + l + " can not be generated");
+        EnumMap<Level, PuzzleStore> stores = this.stores;
+        Sudoku su = stores == null ? null : stores.get(l).take();
+        if (su == null)
+            su = queue.poll();
+        if (queue.size() < lowWater) {
+            synchronized (this) {
+                refilling.put(l, true);
+                notifyAll();
+            }
+        }
+        return su;
+    }
+
+    /**
+     * @param l The level.
+     * @return The number of sudokus in stock,
+     * in memory and on the disk.
+     */
+    public long getStock(Level l) {
+        ArrayBlockingQueue<Sudoku> queue = stock.get(l);
+        if (queue == null)
+            return 0;
+        EnumMap<Level, PuzzleStore> stores = this.stores;
+        return queue.size() + (stores == null ? 0 : stores.get(l).available());
+    }
+
+    /**
+     * Keeps the stock in one file per level in the
+     * directory. The sudokus in the files can be served
+     * at once. The stock above the low water mark is
+     * moved into the files every period, all of the
+     * stock when the JVM shuts down.
+     *
+     * @param directory    The directory for the files.
+     * @param periodMillis The time between two saves.
+     * @throws IOException If a file can not be used.
+     */
+    public synchronized void persist(Path directory, long periodMillis) throws IOException {
+        if (stores != null)
+            return;
+        Files.createDirectories(directory);
+        EnumMap<Level, PuzzleStore> opened = new EnumMap<>(Level.class);
+        for (Level l : stock.keySet())
+            opened.put(l, PuzzleStore.open(directory.resolve(l.name() + ".pool"), l));
+        stores = opened;
+
+        saver = new Timer("PuzzlePool-save", true);
+        saver.schedule(new TimerTask() {
+            @Override
+            public void run() {
+                save();
+            }
+        }, periodMillis, periodMillis);
+        hook = new Thread(this::shutdown, "PuzzlePool-shutdown");
+        Runtime.getRuntime().addShutdownHook(hook);
+    }
+
+    /**
+     * Moves the stock in memory above the low water
+     * mark into the files, as far as they have space
+     * left. The rest stays in memory, so the refill
+     * thread is not woken. Does nothing if the pool
+     * is not {@link #persist(Path, long) persisted}.
+     */
+    public void save() {
+        spill(lowWater);
+    }
+
+    /**
+     * Moves the stock in memory into the files,
+     * as far as they have space left.
+     *
+     * @param keep The sudokus to keep in memory per level.
+     */
+    private synchronized void spill(int keep) {
+        EnumMap<Level, PuzzleStore> stores = this.stores;
+        if (stores == null)
+            return;
+        for (Level l : stock.keySet()) {
+            PuzzleStore store = stores.get(l);
+            ArrayBlockingQueue<Sudoku> queue = stock.get(l);
+            int surplus = (int) Math.min(queue.size() - keep, DISK_CAPACITY - store.available());
+            if (surplus <= 0)
+                continue;
+            List<Sudoku> moved = new ArrayList<>(surplus);
+            queue.drainTo(moved, surplus);
+            try {
+                store.append(moved);
+                store.force();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Closes the files.
+     */
+    private synchronized void closeStores() {
+        EnumMap<Level, PuzzleStore> stores = this.stores;
+        if (stores == null)
+            return;
+        this.stores = null;
+        for (PuzzleStore store : stores.values()) {
+            try {
+                store.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * The loop of the refill thread.
+     */
+    private void refill() {
+        while (!closed) {
+            Level next = null;
+            synchronized (this) {
+                for (Level l : stock.keySet()) {
+                    if (refilling.get(l)) {
+                        next = l;
+                        break;
+                    }
+                }
+                if (next == null) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    continue;
+                }
+            }
+
+            try {
+                // The queue is only filled here, so there is always space.
+                ArrayBlockingQueue<Sudoku> queue = stock.get(next);
+                queue.offer(StaticGenerator.GenerateSudoku(next));
+                if (queue.remainingCapacity() == 0) {
+                    synchronized (this) {
+                        refilling.put(next, false);
+                    }
+                }
+            } catch (ValueFormatException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Stops the refill thread. A persisted pool
+     * moves all its stock into the files and closes them.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (hook != null) {
+                try {
+                    Runtime.getRuntime().removeShutdownHook(hook);
+                } catch (IllegalStateException e) {
+                    // The JVM shuts down already, the hook does the same.
+                }
+                hook = null;
+            }
+        }
+        shutdown();
+    }
+
+    /**
+     * Stops the refill thread and the saves, then
+     * moves all stock into the files and closes them.
+     * A sudoku the refill thread still finishes
+     * afterwards is not saved.
+     */
+    private void shutdown() {
+        closed = true;
+        refill.interrupt();
+        synchronized (this) {
+            if (saver != null)
+                saver.cancel();
+        }
+        spill(0);
+        closeStores();
+    }
+}
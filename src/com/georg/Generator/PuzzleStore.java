@@ -0,0 +1,273 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 Georg A. Friedrich
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.georg.Generator;
+
+import com.georg.Level;
+import com.georg.PuzzleArchive;
+import com.georg.Sudoku;
+import com.georg.ValueFormatException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.List;
+
+import static com.georg.PuzzleArchive.PACKED_SIZE;
+import static com.georg.PuzzleArchive.pack;
+import static com.georg.PuzzleArchive.unpack;
+import static com.georg.Sudoku.FIELD_COUNT;
+import static com.georg.Sudoku.NAN;
+import static java.nio.file.StandardOpenOption.*;
+
+//@formatter:off
+/**
+ * A file with generated sudokus of one level,
+ * that are served at most once, even across
+ * restarts. The file is memory mapped:
+ * <pre><code>
+ * +-------+------------+----------+----------+----------+---
+ * | magic | recordSize | consumed | record 0 | record 1 | ...
+ * |  int  |    int     |   long   |          |          |
+ * +-------+------------+----------+----------+----------+---
+ * </code></pre>
+ * A record is the sudoku and its solution, each
+ * {@link PuzzleArchive#pack(byte[], ByteBuffer) packed}
+ * into 41 bytes with 4 bits per field. All records before <b>consumed</b>
+ * were served. The counter is raised in the mapped
+ * header before a sudoku is handed out, so it
+ * survives a crash of the process. Served records
+ * are dropped when the file is opened again.
+ * <p>
+ * The records are mapped in segments, one for the
+ * file at the start and one for every append, so
+ * an append only maps the records it wrote.
+ */
+//@formatter:on
+public class PuzzleStore implements AutoCloseable {
+    /**
+     * "SDKP", marks the file type.
+     */
+    private static final int MAGIC = 0x53444B50;
+    /**
+     * The bytes of one record.
+     */
+    private static final int RECORD_SIZE = 2 * PACKED_SIZE;
+    /**
+     * The bytes of the header.
+     */
+    private static final int HEADER_SIZE = 16;
+    /**
+     * The position of the consumed counter.
+     */
+    private static final int CONSUMED_POS = 8;
+
+    private final Level level;
+    private final FileChannel channel;
+    private final MappedByteBuffer header;
+    /**
+     * The mapped records that are not all served, oldest first.
+     */
+    private final ArrayDeque<MappedByteBuffer> segments = new ArrayDeque<>();
+    /**
+     * The number of the first record in the oldest segment.
+     */
+    private long segmentStart;
+    /**
+     * The number of records in the file.
+     */
+    private long records;
+    /**
+     * The number of records served.
+     */
+    private long consumed;
+
+    private PuzzleStore(Level level, FileChannel channel) throws IOException {
+        this.level = level;
+        this.channel = channel;
+        if (channel.size() == 0) {
+            ByteBuffer empty = ByteBuffer.allocate(HEADER_SIZE);
+            empty.putInt(MAGIC).putInt(RECORD_SIZE).putLong(0).flip();
+            channel.write(empty, 0);
+        }
+        // Mapping would extend a shorter file.
+        if (channel.size() < HEADER_SIZE)
+            throw new IOException("Not a puzzle store");
+        header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+        if (header.getInt(0) != MAGIC || header.getInt(4) != RECORD_SIZE)
+            throw new IOException("Not a puzzle store");
+        consumed = header.getLong(CONSUMED_POS);
+        segmentStart = consumed;
+        records = consumed;
+        // A torn record at the end is overwritten by the next append.
+        mapRecords((channel.size() - HEADER_SIZE) / RECORD_SIZE - consumed);
+    }
+
+    /**
+     * Opens the store of a level, creates it if
+     * it does not exist. Served records are
+     * dropped before the file is mapped.
+     *
+     * @param file  The file.
+     * @param level The level of the sudokus.
+     * @return The store.
+     * @throws IOException If the file can not be
+     *                     used or is no puzzle store.
+     */
+    public static PuzzleStore open(Path file, Level level) throws IOException {
+        if (Files.exists(file))
+            compact(file);
+        return new PuzzleStore(level, FileChannel.open(file, CREATE, READ, WRITE));
+    }
+
+    /**
+     * Rewrites the file without the served records.
+     * The new file replaces the old one at once, so
+     * a crash leaves one of both intact.
+     *
+     * @param file The file.
+     * @throws IOException If the file can not be used.
+     */
+    private static void compact(Path file) throws IOException {
+        long consumed;
+        try (FileChannel in = FileChannel.open(file, READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            if (in.read(header, 0) < HEADER_SIZE)
+                return;
+            consumed = header.getLong(CONSUMED_POS);
+            if (header.getInt(0) != MAGIC || header.getInt(4) != RECORD_SIZE || consumed == 0)
+                return;
+
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (FileChannel out = FileChannel.open(tmp, CREATE, TRUNCATE_EXISTING, WRITE)) {
+                header.putLong(CONSUMED_POS, 0).rewind();
+                out.write(header);
+                long from = HEADER_SIZE + consumed * RECORD_SIZE;
+                long end = in.size() - (in.size() - HEADER_SIZE) % RECORD_SIZE;
+                while (from < end)
+                    from += in.transferTo(from, end - from, out);
+                out.force(true);
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    /**
+     * Maps the next records of the file
+     * as new segment and counts them.
+     *
+     * @param count The number of records.
+     */
+    private void mapRecords(long count) throws IOException {
+        if (count <= 0)
+            return;
+        segments.add(channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + records * RECORD_SIZE, count * RECORD_SIZE));
+        records += count;
+    }
+
+    /**
+     * @return The level of the sudokus.
+     */
+    public Level getLevel() {
+        return level;
+    }
+
+    /**
+     * @return The number of sudokus not served yet.
+     */
+    public synchronized long available() {
+        return records - consumed;
+    }
+
+    /**
+     * Serves the next sudoku. It is marked
+     * as served before it is returned.
+     *
+     * @return The sudoku with its solution,
+     * null if all were served.
+     */
+    public synchronized Sudoku take() throws ValueFormatException {
+        if (consumed >= records)
+            return null;
+        // Served segments are unmapped by the garbage collector.
+        MappedByteBuffer segment = segments.getFirst();
+        while (consumed >= segmentStart + segment.capacity() / RECORD_SIZE) {
+            segmentStart += segment.capacity() / RECORD_SIZE;
+            segments.removeFirst();
+            segment = segments.getFirst();
+        }
+        int pos = (int) ((consumed - segmentStart) * RECORD_SIZE);
+        header.putLong(CONSUMED_POS, ++consumed);
+
+        byte[] field = new byte[FIELD_COUNT];
+        byte[] solution = new byte[FIELD_COUNT];
+        unpack(segment, pos, field);
+        unpack(segment, pos + PACKED_SIZE, solution);
+        return new Sudoku(level, field, solution[0] == NAN ? null : new Sudoku(level, solution));
+    }
+
+    /**
+     * Adds sudokus at the end of the file.
+     *
+     * @param sudokus The sudokus, of the level of this store.
+     * @throws IOException If the file can not be written.
+     */
+    public synchronized void append(List<Sudoku> sudokus) throws IOException {
+        if (sudokus.isEmpty())
+            return;
+        ByteBuffer buf = ByteBuffer.allocate(sudokus.size() * RECORD_SIZE);
+        for (Sudoku su : sudokus) {
+            pack(su.getField(), buf);
+            Sudoku solution = su.getSolution();
+            if (solution != null)
+                pack(solution.getField(), buf);
+            else
+                buf.position(buf.position() + PACKED_SIZE);
+        }
+        buf.flip();
+        long pos = HEADER_SIZE + records * RECORD_SIZE;
+        while (buf.hasRemaining())
+            pos += channel.write(buf, pos);
+        mapRecords(sudokus.size());
+    }
+
+    /**
+     * Writes all changes to the disk.
+     */
+    public synchronized void force() throws IOException {
+        header.force();
+        channel.force(false);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        force();
+        channel.close();
+    }
+}
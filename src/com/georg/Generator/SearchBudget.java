@@ -0,0 +1,143 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 Georg A. Friedrich
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.georg.Generator;
+
+/**
+ * The node and time budget of one search.
+ * <p>
+ * The search calls {@link #exhausted()} once per
+ * node. Most calls only count down an int, the
+ * budgets themselves are only looked at every
+ * {@link #CHECK_INTERVAL} nodes, so the clock is
+ * read rarely and the hot loop stays cheap.
+ */
+final class SearchBudget {
+    /**
+     * The number of nodes between two checks.
+     */
+    static final int CHECK_INTERVAL = 1024;
+
+    private long nodeLimit = Long.MAX_VALUE;
+    private long deadline = Long.MAX_VALUE;
+    /**
+     * The nodes of all finished intervals.
+     */
+    private long nodes;
+    /**
+     * The size of the current interval.
+     */
+    private int batch;
+    /**
+     * Nodes left in the current interval.
+     */
+    private int countdown;
+    /**
+     * Why the budget ran out, null while it lasts.
+     */
+    private StopReason reason;
+
+    /**
+     * Resets the budget for a new search.
+     *
+     * @param nodeLimit The maximum number of nodes.
+     * @param deadline  The time in ms ({@link System#currentTimeMillis()})
+     *                  at which the search has to stop.
+     */
+    void start(long nodeLimit, long deadline) {
+        this.nodeLimit = nodeLimit;
+        this.deadline = deadline;
+        nodes = 0;
+        reason = null;
+        nextInterval();
+    }
+
+    /**
+     * Counts one node.
+     *
+     * @return True if the search has to stop.
+     */
+    boolean exhausted() {
+        if (--countdown > 0)
+            return false;
+        return check();
+    }
+
+    /**
+     * @return True if the budget ran out. Does
+     * not count a node.
+     */
+    boolean isStopped() {
+        return reason != null;
+    }
+
+    /**
+     * @return Why the budget ran out, null
+     * if it did not.
+     */
+    StopReason getReason() {
+        return reason;
+    }
+
+    /**
+     * @return The number of counted nodes.
+     */
+    long getNodes() {
+        return reason == null ? nodes + batch - countdown : nodes;
+    }
+
+    /**
+     * The slow path of {@link #exhausted()}.
+     *
+     * @return True if the search has to stop.
+     */
+    private boolean check() {
+        if (reason != null) {
+            countdown = 1;
+            return true;
+        }
+        nodes += batch;
+        if (nodes > nodeLimit)
+            reason = StopReason.NODE_BUDGET;
+        else if (System.currentTimeMillis() > deadline)
+            reason = StopReason.DEADLINE;
+        if (reason != null) {
+            nodes = Math.min(nodes, nodeLimit);
+            countdown = 1;
+            return true;
+        }
+        nextInterval();
+        return false;
+    }
+
+    /**
+     * Starts the next interval, never longer
+     * than the nodes left in the budget.
+     */
+    private void nextInterval() {
+        long left = nodeLimit - nodes;
+        batch = left >= CHECK_INTERVAL ? CHECK_INTERVAL : (int) left + 1;
+        countdown = batch;
+    }
+}
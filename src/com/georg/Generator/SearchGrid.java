@@ -0,0 +1,410 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 Georg A. Friedrich
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.georg.Generator;
+
+import com.georg.Level;
+import com.georg.Sudoku;
+import com.georg.ValueFormatException;
+
+import java.util.Arrays;
+
+import static com.georg.FieldTables.*;
+import static com.georg.Sudoku.*;
+
+/**
+ * A mutable sudoku field for the in place
+ * search of the {@link SudokuSolver}.
+ * <p>
+ * Instead of copying the whole field for every
+ * candidate like {@link CompSudoku#expand()}, the
+ * solver writes directly into this grid. Every
+ * assignment is recorded on a primitive undo trail,
+ * so a backtrack just rolls the trail back to an
+ * earlier {@link #mark() mark}. After the grid is
+ * created no search step allocates any memory.
+ */
+final class SearchGrid {
+    /**
+     * Mask with all possible numbers set.
+     */
+    static final int ALL = (1 << MAX_NUM) - 1;
+    /**
+     * The field, same layout as {@link Sudoku}.
+     */
+    private final byte[] field = new byte[FIELD_COUNT];
+    /**
+     * The used numbers per row, column and
+     * block. Bit <b>n</b> stands for the
+     * number <b>n+1</b>.
+     */
+    private final int[] rowMask = new int[FIELD_SIZE];
+    private final int[] colMask = new int[FIELD_SIZE];
+    private final int[] blockMask = new int[FIELD_SIZE];
+    /**
+     * The undo trail. Holds the indexes of all
+     * fields set by the search in the order
+     * they were set.
+     */
+    private final int[] trail = new int[FIELD_COUNT];
+    /**
+     * The number of used entries in {@link #trail}.
+     */
+    private int trailSize;
+    /**
+     * The indexes of all free fields in the
+     * first {@link #free} entries. A placed
+     * field is swapped behind them, so an
+     * undo in trail order only has to count
+     * {@link #free} up again.
+     */
+    private final int[] freeFields = new int[FIELD_COUNT];
+    /**
+     * The position of every index in
+     * {@link #freeFields}.
+     */
+    private final int[] freePos = new int[FIELD_COUNT];
+    /**
+     * The number of free fields.
+     */
+    private int free;
+
+    /**
+     * Creates an empty grid. Use
+     * {@link #load(Sudoku)} to fill it.
+     */
+    SearchGrid() {
+        Arrays.fill(field, (byte) NAN);
+        for (int i = 0; i < FIELD_COUNT; i++) {
+            freeFields[i] = i;
+            freePos[i] = i;
+        }
+        free = FIELD_COUNT;
+    }
+
+    /**
+     * Creates a grid that holds the
+     * field of the sudoku.
+     *
+     * @param sudoku The sudoku.
+     */
+    SearchGrid(Sudoku sudoku) {
+        load(sudoku);
+    }
+
+    /**
+     * Replaces the content of this grid with
+     * the field of the sudoku and clears the
+     * undo trail. Allows to reuse one grid for
+     * many searches.
+     *
+     * @param sudoku The sudoku.
+     */
+    void load(Sudoku sudoku) {
+        clear();
+        for (int i = 0; i < FIELD_COUNT; i++)
+            init(i, sudoku.getAtIndex(i));
+    }
+
+    /**
+     * Replaces the content of this grid with
+     * the field and clears the undo trail.
+     *
+     * @param field A field, same layout as {@link Sudoku}.
+     */
+    void load(byte[] field) {
+        clear();
+        for (int i = 0; i < FIELD_COUNT; i++)
+            init(i, field[i]);
+    }
+
+    /**
+     * Resets masks, trail and free fields
+     * before a {@link #load(Sudoku) load}.
+     */
+    private void clear() {
+        Arrays.fill(rowMask, 0);
+        Arrays.fill(colMask, 0);
+        Arrays.fill(blockMask, 0);
+        trailSize = 0;
+        free = 0;
+    }
+
+    /**
+     * Writes one value while loading.
+     * Not recorded on the undo trail.
+     *
+     * @param index The index.
+     * @param value The value, can be {@link Sudoku#NAN}.
+     */
+    private void init(int index, byte value) {
+        field[index] = value;
+        if (value == NAN) {
+            freeFields[free] = index;
+            freePos[index] = free++;
+        } else {
+            int bit = 1 << (value - 1);
+            rowMask[ROW_OF[index]] |= bit;
+            colMask[COL_OF[index]] |= bit;
+            blockMask[BOX_OF[index]] |= bit;
+        }
+    }
+
+    /**
+     * @param index The index.
+     * @return The value at the index.
+     */
+    byte getAtIndex(int index) {
+        return field[index];
+    }
+
+    /**
+     * Returns the candidates of a free
+     * field as bit mask. Bit <b>n</b> is set
+     * if the number <b>n+1</b> can be placed.
+     *
+     * @param index The index.
+     * @return The candidate mask.
+     */
+    int getCandidates(int index) {
+        return ~(rowMask[ROW_OF[index]] | colMask[COL_OF[index]] | blockMask[BOX_OF[index]]) & ALL;
+    }
+
+    /**
+     * Finds the next free field in reading order.
+     *
+     * @param from The first index to look at.
+     * @return The index of the next free field,
+     * -1 if there is none.
+     */
+    int nextFree(int from) {
+        for (int i = from; i < FIELD_COUNT; i++)
+            if (field[i] == NAN)
+                return i;
+        return -1;
+    }
+
+    /**
+     * Finds the free field with the fewest
+     * candidates. Stops looking as soon as a
+     * field with at most one candidate is found,
+     * because no field can do better.
+     *
+     * @return The index of the most constrained
+     * free field, -1 if there is none.
+     */
+    int mostConstrained() {
+        int best = -1, bestCount = MAX_NUM + 1;
+        for (int i = 0; i < free; i++) {
+            int index = freeFields[i];
+            int count = Integer.bitCount(getCandidates(index));
+            if (count < bestCount) {
+                best = index;
+                bestCount = count;
+                if (count <= 1)
+                    break;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @return The number of free fields.
+     */
+    int getFree() {
+        return free;
+    }
+
+    /**
+     * Places a number on a free field and
+     * records it on the undo trail.
+     * The number has to be a candidate.
+     *
+     * @param index The index.
+     * @param bit   The number as a single bit mask.
+     */
+    void place(int index, int bit) {
+        field[index] = (byte) (Integer.numberOfTrailingZeros(bit) + 1);
+        rowMask[ROW_OF[index]] |= bit;
+        colMask[COL_OF[index]] |= bit;
+        blockMask[BOX_OF[index]] |= bit;
+        trail[trailSize++] = index;
+
+        // Swap the index behind the free fields.
+        int last = freeFields[--free], pos = freePos[index];
+        freeFields[pos] = last;
+        freePos[last] = pos;
+        freeFields[free] = index;
+        freePos[index] = free;
+    }
+
+    /**
+     * Fills in every field that has only one way
+     * left until nothing changes anymore:
+     * <ul>
+     * <li>Naked single: a free field with one candidate.</li>
+     * <li>Hidden single: a number that fits in only one
+     * field of a row, column or block.</li>
+     * </ul>
+     * Every placed number goes onto the undo trail,
+     * so the caller can take it all back with
+     * {@link #undo(int)}.
+     *
+     * @return False if a contradiction was found, a
+     * field without candidates or a number without a
+     * field left in one unit. The grid has no solution then.
+     */
+    boolean propagate() {
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+
+            for (int i = 0; i < free; i++) {
+                int index = freeFields[i];
+                int possible = getCandidates(index);
+                if (possible == 0)
+                    return false;
+                if ((possible & (possible - 1)) == 0) {
+                    place(index, possible);
+                    // place swapped another free field onto i.
+                    i--;
+                    changed = true;
+                }
+            }
+
+            for (int start = 0; start < UNIT_CELLS.length; start += FIELD_SIZE) {
+                // Numbers that fit into at least one and at least two free fields.
+                int once = 0, twice = 0, used = 0;
+                for (int k = 0; k < FIELD_SIZE; k++) {
+                    int index = UNIT_CELLS[start + k];
+                    if (field[index] != NAN)
+                        used |= 1 << (field[index] - 1);
+                    else {
+                        int possible = getCandidates(index);
+                        twice |= once & possible;
+                        once |= possible;
+                    }
+                }
+                if ((once | used) != ALL)
+                    return false;
+
+                for (int singles = once & ~twice; singles != 0; singles &= singles - 1) {
+                    int bit = singles & -singles;
+                    int index = -1;
+                    for (int k = 0; k < FIELD_SIZE; k++) {
+                        int j = UNIT_CELLS[start + k];
+                        if (field[j] == NAN && (getCandidates(j) & bit) != 0) {
+                            index = j;
+                            break;
+                        }
+                    }
+                    // The only field was taken by another single.
+                    if (index < 0)
+                        return false;
+                    place(index, bit);
+                    changed = true;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Takes a loaded number off the grid, so the
+     * grid does not have to be loaded again for a
+     * puzzle with one given less. Only allowed
+     * while nothing is placed, and the number has
+     * to be the only one of its value in its row,
+     * column and block, like in every valid puzzle.
+     *
+     * @param index The index of a loaded number.
+     */
+    void clear(int index) {
+        int bit = 1 << (field[index] - 1);
+        rowMask[ROW_OF[index]] &= ~bit;
+        colMask[COL_OF[index]] &= ~bit;
+        blockMask[BOX_OF[index]] &= ~bit;
+        field[index] = NAN;
+        freeFields[free] = index;
+        freePos[index] = free++;
+    }
+
+    /**
+     * Puts a number back as loaded number, the
+     * opposite of {@link #clear(int)}. Only allowed
+     * while nothing is placed.
+     *
+     * @param index The index of a free field.
+     * @param value The number, it has to be a candidate.
+     */
+    void set(int index, byte value) {
+        place(index, 1 << (value - 1));
+        // Loaded numbers are not on the trail.
+        trailSize--;
+    }
+
+    /**
+     * @return The current position of the undo
+     * trail. Can be given to {@link #undo(int)}.
+     */
+    int mark() {
+        return trailSize;
+    }
+
+    /**
+     * Removes every number that was placed after
+     * the mark was taken.
+     *
+     * @param mark A value of {@link #mark()}.
+     */
+    void undo(int mark) {
+        while (trailSize > mark) {
+            int index = trail[--trailSize];
+            int bit = ~(1 << (field[index] - 1));
+            rowMask[ROW_OF[index]] &= bit;
+            colMask[COL_OF[index]] &= bit;
+            blockMask[BOX_OF[index]] &= bit;
+            field[index] = NAN;
+            // The index still waits right behind the free fields.
+            free++;
+        }
+    }
+
+    /**
+     * Copies the current field into the array.
+     *
+     * @param out The target, at least {@link Sudoku#FIELD_COUNT} long.
+     */
+    void copyTo(byte[] out) {
+        System.arraycopy(field, 0, out, 0, FIELD_COUNT);
+    }
+
+    /**
+     * @param level The level of the returned sudoku.
+     * @return A new sudoku with the current field.
+     */
+    Sudoku toSudoku(Level level) throws ValueFormatException {
+        return new Sudoku(level, field);
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 Georg A. Friedrich
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.georg.Generator;
+
+/**
+ * The different engines the {@link SudokuSolver}
+ * can use for its searches. All engines give
+ * the same results on a field without rule
+ * violations.
+ */
+public enum SolverEngine {
+    /**
+     * The original depth first search that
+     * creates a copy of the sudoku for every
+     * candidate with {@link CompSudoku#expand()}.
+     */
+    EXPAND,
+    /**
+     * Depth first search on one mutable
+     * {@link SearchGrid}, undone with an
+     * undo trail. Does not allocate during
+     * the search.
+     */
+    IN_PLACE,
+    /**
+     * Exact cover search with Dancing Links, see
+     * {@link DancingLinksSolver}.
+     */
+    DANCING_LINKS
+}
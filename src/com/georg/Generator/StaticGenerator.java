@@ -27,6 +27,10 @@ package com.georg.Generator;
 import com.georg.Level;
 import com.georg.Sudoku;
 import com.georg.ValueFormatException;
+import it.unimi.dsi.util.XoRoShiRo128PlusRandom;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Created by Georg on 31/05/16.
@@ -37,19 +41,92 @@ import com.georg.ValueFormatException;
  * given difficulty.
  */
 public class StaticGenerator {
+    /**
+     * How often holes are dug into one terminal
+     * pattern, before a new one is created.
+     * Every try after the first digs in a
+     * new {@link SudokuGen#shuffleDigOrder() order}.
+     */
+    public static final int DIG_TRIES = 8;
+
     /**
      * The method that allows to generate a
      * sudoku in the given difficulty.
+     * The attempts are counted in the
+     * {@link GenerationStatistics} of the level.
      *
      * @param l The difficultly.
      * @return The final sudoku puzzle.
      */
     public static Sudoku GenerateSudoku(Level l) throws ValueFormatException {
+        return GenerateSudoku(l, 1);
+    }
+
+    /**
+     * Generates a sudoku and checks the next
+     * <b>lookAhead</b> holes at the same time on
+     * the common pool. Lowers the time for one
+     * sudoku, the puzzles are the same as digging
+     * one hole after another would give.
+     *
+     * @param l         The difficultly.
+     * @param lookAhead The number of holes checked
+     *                  at the same time, 1 to dig serial.
+     * @return The final sudoku puzzle.
+     */
+    public static Sudoku GenerateSudoku(Level l, int lookAhead) throws ValueFormatException {
         while (true) {
             // Generates a terminal pattern.
-            Sudoku su = LasVegasAlgorithm.LasVegas(l);
-            // Inits the Generator.
-            SudokuGen gen = new SudokuGen(su);
+            Sudoku su = TerminalPatternFactory.getShared().next(l);
+            Sudoku dug = digPattern(su, l, lookAhead);
+            if (dug != null) {
+                // Return the freshly sampled sudoku puzzle.
+                return propagate(dug);
+            }
+        }
+    }
+
+    /**
+     * Digs the holes into a terminal pattern,
+     * up to {@link #DIG_TRIES} times.
+     * The attempts are counted in the
+     * {@link GenerationStatistics} of the level.
+     *
+     * @param su        The terminal pattern.
+     * @param l         The difficultly.
+     * @param lookAhead The number of holes checked
+     *                  at the same time, 1 to dig serial.
+     * @return The dug sudoku, null if no try
+     * met the difficulty.
+     */
+    static Sudoku digPattern(Sudoku su, Level l, int lookAhead) throws ValueFormatException {
+        return digPattern(su, l, lookAhead, new XoRoShiRo128PlusRandom());
+    }
+
+    /**
+     * Digs the holes into a terminal pattern
+     * with the given random generator.
+     *
+     * @param su        The terminal pattern.
+     * @param l         The difficultly.
+     * @param lookAhead The number of holes checked
+     *                  at the same time, 1 to dig serial.
+     * @param rand      The random generator.
+     * @return The dug sudoku, null if no try
+     * met the difficulty.
+     * @see #digPattern(Sudoku, Level, int)
+     */
+    static Sudoku digPattern(Sudoku su, Level l, int lookAhead, Random rand) throws ValueFormatException {
+        GenerationStatistics stats = GenerationStatistics.of(l);
+        stats.recordPattern();
+        // Inits the Generator.
+        SudokuGen gen = new SudokuGen(su, rand);
+        if (lookAhead > 1)
+            gen.setLookAhead(lookAhead, ForkJoinPool.commonPool());
+        for (int t = 0; t < DIG_TRIES; t++) {
+            // A rejected pattern is dug again in a different order.
+            if (t > 0)
+                gen.shuffleDigOrder();
             // Digs the holes.
             gen.digHoles();
 
@@ -61,14 +138,36 @@ public class StaticGenerator {
              * because all other properties are guarantied
              * to be satisfied in the SudokuGen class.
              */
-            if (((CompSudoku) gen.getSudoku()).getNumTotalFields() <= l.getMaxTotalGiven()) {
-                // Mixes the sudoku a bit without changing the difficulty.
-                SudokuPropagation sudokuPropagation = new SudokuPropagation(gen.getSudoku());
-                sudokuPropagation.randomSampling(1000);
-
-                // Return the freshly sampled sudoku puzzle.
-                return sudokuPropagation.getSudoku();
-            }
+            boolean ok = ((CompSudoku) gen.getSudoku()).getNumTotalFields() <= l.getMaxTotalGiven();
+            stats.recordAttempt(ok);
+            if (ok)
+                return gen.getSudoku();
         }
+        return null;
+    }
+
+    /**
+     * Mixes the sudoku a bit without
+     * changing the difficulty.
+     *
+     * @param dug The dug sudoku.
+     * @return The sampled sudoku.
+     */
+    static Sudoku propagate(Sudoku dug) throws ValueFormatException {
+        return propagate(dug, new XoRoShiRo128PlusRandom());
+    }
+
+    /**
+     * Mixes the sudoku with the
+     * given random generator.
+     *
+     * @param dug  The dug sudoku.
+     * @param rand The random generator.
+     * @return The sampled sudoku.
+     */
+    static Sudoku propagate(Sudoku dug, Random rand) throws ValueFormatException {
+        SudokuPropagation sudokuPropagation = new SudokuPropagation(dug);
+        sudokuPropagation.randomSampling(1000, rand);
+        return sudokuPropagation.getSudoku();
     }
 }
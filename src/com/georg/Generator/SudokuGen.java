@@ -29,7 +29,13 @@ import com.georg.Sudoku;
 import com.georg.ValueFormatException;
 import it.unimi.dsi.util.XoRoShiRo128PlusRandom;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 import static com.georg.Sudoku.FIELD_COUNT;
 import static com.georg.Sudoku.FIELD_SIZE;
@@ -111,11 +117,24 @@ public class SudokuGen {
      * The sudoku to work with.
      */
     private CompSudoku sudoku;
+    /**
+     * The terminal pattern, every
+     * {@link #digHoles()} starts from it.
+     */
+    private final CompSudoku terminal;
+    /**
+     * Maps the indexes of the dig sequence
+     * onto the field. The identity at first,
+     * so the sequences of the paper are used.
+     *
+     * @see #shuffleDigOrder()
+     */
+    private SymmetryTransform digOrder = new SymmetryTransform();
     /**
      * A instance of a good performance,
      * and precise pseudorandom class.
      */
-    private XoRoShiRo128PlusRandom rand;
+    private Random rand;
     /**
      * The difficulty.
      */
@@ -126,6 +145,22 @@ public class SudokuGen {
      * @see CanBeDugList
      */
     private CanBeDugList possible;
+    /**
+     * The uniqueness checks. Kept for all
+     * digs of the terminal pattern, so the
+     * witnesses it found are reused.
+     */
+    private final UniquenessChecker checker;
+    /**
+     * The number of holes in the sequence that
+     * are checked at the same time. 1 digs
+     * strictly one after another.
+     */
+    private int lookAhead = 1;
+    /**
+     * The pool for the checks ahead.
+     */
+    private ForkJoinPool pool = ForkJoinPool.commonPool();
 
     /**
      * Creates an instance of this class.
@@ -133,12 +168,30 @@ public class SudokuGen {
      * and {@link #sudoku}. Where the latter two
      * are influenced by the input.
      * The input instance will not be edited.
+     * The input is a terminal pattern, so it
+     * is kept as the solution of the dug field.
      *
      * @param sudoku The input sudoku.
      */
     SudokuGen(Sudoku sudoku) throws ValueFormatException {
-        this.sudoku = new CompSudoku(sudoku);
-        this.rand = new XoRoShiRo128PlusRandom();
+        this(sudoku, new XoRoShiRo128PlusRandom());
+    }
+
+    /**
+     * Creates an instance of this class, which
+     * digs with the given random generator.
+     * A seeded generator digs the same holes
+     * into the same terminal pattern.
+     *
+     * @param sudoku The input sudoku.
+     * @param rand   The random generator.
+     */
+    SudokuGen(Sudoku sudoku, Random rand) throws ValueFormatException {
+        this.terminal = new CompSudoku(sudoku);
+        this.terminal.setSolution(new Sudoku(sudoku.getDifficulty(), sudoku.getField()));
+        this.sudoku = terminal;
+        this.checker = new UniquenessChecker(sudoku);
+        this.rand = rand;
         this.level = sudoku.getDifficulty();
     }
 
@@ -149,19 +202,163 @@ public class SudokuGen {
         return sudoku;
     }
 
+    /**
+     * Lets {@link #digHoles()} check the next
+     * holes of the sequence at the same time.
+     * The digs are still decided in the order of
+     * the sequence, so the result is the same as
+     * digging one hole after another.
+     *
+     * @param lookAhead The number of holes checked
+     *                  at the same time, 1 to dig serial.
+     * @param pool      The pool for the checks.
+     */
+    void setLookAhead(int lookAhead, ForkJoinPool pool) {
+        this.lookAhead = Math.max(lookAhead, 1);
+        this.pool = pool;
+    }
+
+    /**
+     * Chooses a new order to dig the
+     * terminal pattern for the next
+     * {@link #digHoles()}. The sequence of
+     * the level is mapped through a random
+     * {@link SymmetryTransform}, so it keeps
+     * its shape on a shuffled grid.
+     */
+    void shuffleDigOrder() {
+        digOrder = SymmetryTransform.random(rand);
+    }
+
     /**
      * This is the main function of the
      * class. It digs the holes into the
      * sudoku. It is managing job 1-4.
+     * Always starts over from the
+     * terminal pattern.
      *
      * @throws ArithmeticException If a
      *                             non-included difficultly is used.
      */
     void digHoles() throws ValueFormatException {
-        possible = new CanBeDugList();
+        // The holes go into a copy, a sudoku of an earlier dig is not changed.
+        sudoku = terminal.copy();
+        checker.reset();
         // The minimum amount of total givens. Randomly sampled.
         final int minBound = rand.nextInt(level.getMaxTotalGiven() - level.getMinTotalGiven()) + level.getMinTotalGiven();
 
+        int[] sequence = digSequence();
+        if (lookAhead > 1) {
+            digAhead(sequence, minBound);
+            return;
+        }
+
+        for (int i : sequence) {
+            /* If the hole is acceptable for all rules
+             * it is dug into the current sudoku.
+             * The cheap bounds are checked first.
+             */
+            if (keepsBounds(i, minBound) && checker.canDig(i))
+                dig(i);
+        }
+    }
+
+    /**
+     * Digs like {@link #digHoles()}, but checks the
+     * next {@link #lookAhead} holes on the pool while
+     * the current one is decided. A check assumes that
+     * the holes before it, which are still checked, are
+     * all dug. The real puzzle has at least those givens,
+     * so a hole that passed also passes on it. A hole that
+     * failed is only checked again if one of the assumed
+     * holes was not dug, mostly the witness of the failed
+     * check decides it then without a search.
+     * The assumed puzzle may have more solutions, so only
+     * checks on the real puzzle keep proofs.
+     *
+     * @param sequence The holes in the order to dig.
+     * @param minBound The minimum amount of total givens.
+     */
+    private void digAhead(int[] sequence, int minBound) throws ValueFormatException {
+        List<ForkJoinTask<Boolean>> pending = new ArrayList<>(Collections.nCopies(sequence.length, null));
+        // The givens each check assumed.
+        long[] assumedLow = new long[sequence.length];
+        long[] assumedHigh = new long[sequence.length];
+        int next = 0;
+
+        for (int pos = 0; pos < sequence.length; pos++) {
+            for (; next < sequence.length && next < pos + lookAhead; next++) {
+                long low = checker.getGivenLow(), high = checker.getGivenHigh();
+                for (int k = pos; k < next; k++) {
+                    if (sequence[k] < 64)
+                        low &= ~(1L << sequence[k]);
+                    else
+                        high &= ~(1L << (sequence[k] - 64));
+                }
+                final long checkLow = low, checkHigh = high;
+                final int index = sequence[next];
+                // Nothing assumed, the real puzzle.
+                final boolean unique = next == pos;
+                assumedLow[next] = low;
+                assumedHigh[next] = high;
+                pending.set(next, pool.submit(() -> checker.check(checkLow, checkHigh, index, unique)));
+            }
+
+            int i = sequence[pos];
+            ForkJoinTask<Boolean> check = pending.set(pos, null);
+            if (!keepsBounds(i, minBound)) {
+                check.cancel(false);
+                continue;
+            }
+
+            boolean ok = check.join();
+            // A failure with fewer givens says nothing about the real puzzle.
+            if (!ok && (assumedLow[pos] != checker.getGivenLow() || assumedHigh[pos] != checker.getGivenHigh()))
+                ok = checker.canDig(i);
+            if (ok)
+                dig(i);
+        }
+    }
+
+    /**
+     * Checks the bounds of the level on the
+     * counts of the checker, before the hole
+     * is dug into the sudoku.
+     *
+     * @param index    The hole.
+     * @param minBound The minimum amount of total givens.
+     * @return True if the hole keeps the bounds.
+     */
+    private boolean keepsBounds(int index, int minBound) {
+        return checker.getGivens() - 1 >= minBound && checker.getLowerBoundRC(index) >= level.getMinGivenRC();
+    }
+
+    /**
+     * Digs an accepted hole into the sudoku
+     * and into the givens of the checker.
+     *
+     * @param index The hole.
+     */
+    private void dig(int index) {
+        sudoku.dig(index);
+        checker.dig(index);
+    }
+
+    /**
+     * Determines the order in which the holes are
+     * tried. The sequences do not depend on the
+     * outcome of the digs, so the whole order is
+     * known before the first hole is dug.
+     *
+     * @return Every index once, in the order to dig.
+     * @throws ArithmeticException If a
+     *                             non-included difficultly is used.
+     */
+    private int[] digSequence() {
+        possible = new CanBeDugList();
+        int[] ret = new int[FIELD_COUNT];
+        int n = 0;
+
         int i = -1;
         // Repeat as long as there are free fields.
         while (possible.isFree()) {
@@ -192,18 +389,13 @@ public class SudokuGen {
                     throw new ArithmeticException("Level" + level + "NOT IMPLEMENTED YET");
             }
 
-            // Generates temporary digged sudoku.
-            CompSudoku tmp = sudoku.digClone(i);
-            /* If the temporary sudoku is acceptable for all
-             * rules the temporary gets the current one.
-             */
-            if (isUnique(tmp, sudoku.getAtIndex(i)) && tmp.getNumTotalFields() >= minBound
-                    && tmp.getLowerBoundRC() >= level.getMinGivenRC())
-                sudoku = tmp;
-
+            // Every index only once, sequences may come back to one.
+            if (possible.getAtIndex(i))
+                ret[n++] = digOrder.sourceOf(i);
             // Declare that this index was in fact worked on.
             possible.setAtIndex(i, false);
         }
+        return n == FIELD_COUNT ? ret : Arrays.copyOf(ret, n);
     }
 
     //@formatter:off
@@ -327,30 +519,4 @@ public class SudokuGen {
         }
         return -1;
     }
-
-
-    /**
-     * Test if the current sudoku replace will
-     * still create a unique solution. This is
-     * done by trying to solve a sudoku that
-     * replaces the to be duged number with any
-     * other allowed number at this index.
-     * In the paper it is called: Reduction to
-     * absurdity.
-     *
-     * @param tmp  The digged sudoku.
-     * @param orig The original character on the
-     *             currently free hole.
-     * @return True if it is unique.
-     */
-    private boolean isUnique(CompSudoku tmp, byte orig) throws ValueFormatException {
-        List<CompSudoku> nodes = tmp.expand();
-        for (CompSudoku node : nodes) {
-            if (node.getAtIndex(tmp.getIndex()) != orig) {
-                if (SudokuSolver.isSolvable(node))
-                    return false;
-            }
-        }
-        return true;
-    }
 }
@@ -28,6 +28,8 @@ import com.georg.Sudoku;
 import com.georg.ValueFormatException;
 import it.unimi.dsi.util.XoRoShiRo128PlusRandom;
 
+import java.util.Random;
+
 import static com.georg.Sudoku.*;
 
 /**
@@ -36,40 +38,49 @@ import static com.georg.Sudoku.*;
  * This class has methods for all possible
  * preparations described by the paper under
  * "Operator ○5 : Equivalent propagation"
+ * <p>
+ * The methods do not touch the field, they are
+ * composed into one {@link SymmetryTransform},
+ * which is applied once to the sudoku and its
+ * solution by {@link #getSudoku()}.
  */
 @SuppressWarnings("WeakerAccess")
 public class SudokuPropagation {
 
     /**
-     * The sudoku class instance.
+     * The sudoku class instance. Holds
+     * its solution, if one exists.
      */
-    private CompSudoku sudoku;
+    private Sudoku sudoku;
     /**
-     * The solved sudoku.
-     * For performance this is solved only once.
+     * The steps which are not yet
+     * applied to the sudoku.
      */
-    private Sudoku solvedSudoku;
+    private SymmetryTransform transform = new SymmetryTransform();
 
     /**
      * Initialises the class with the input
-     * sudoku and solves it.
+     * sudoku. It is only solved, if its
+     * solution is not known already.
      *
      * @param sudoku The sudoku to be propagated.
+     * @throws ValueFormatException If the sudoku has no solution.
      */
     public SudokuPropagation(Sudoku sudoku) throws ValueFormatException {
-        this.sudoku = new CompSudoku(sudoku);
-        SudokuSolver.DFSLV(this.sudoku, System.currentTimeMillis() * 2, 0, 1);
-        solvedSudoku = SudokuSolver.getLastField();
+        if (sudoku.getSolution() == null) {
+            Sudoku solution = new SudokuSolver().solve(sudoku);
+            if (solution == null)
+                throw new ValueFormatException("The sudoku has no solution");
+            sudoku = new Sudoku(sudoku.getDifficulty(), sudoku.getField(), solution);
+        }
+        this.sudoku = sudoku;
     }
 
     //@formatter:off
     /**
-     * This flips two numbers in the sudoku for every
-     * block on its own where it gets the position
-     * from the solved field.
-     * Due to the nature of sudokus this will in a not
-     * terminal pattern pretty much destroy it.
-     * Just kept here for the sake of completeness.
+     * Relabels two numbers on the whole field.
+     * Every 2 becomes a 5 and every 5 a 2, in
+     * the sudoku as well as in its solution.
      *
      * <pre><code>
      * ┌───┬───┬───┐      ┌───┬───┬───┐
@@ -85,36 +96,21 @@ public class SudokuPropagation {
      *
      * @param d1 The first digit.
      * @param d2 The second digit.
-     * @return Always true.
+     * @return True if the action was useful.
+     * False if the action had no effect (f.E:d1==d2)
      * @throws ValueFormatException If d1 or d2 is out of range.
-     * @throws ArithmeticException If one of the two numbers
-     * were not found. Should be unreachable in complete sudoku.
      */
     //@formatter:on
-    @SuppressWarnings("unused")
     public boolean prop1_TwoDigits(byte d1, byte d2) throws ValueFormatException {
         if (d1 <= 0 || d1 > MAX_NUM)
             throw new ValueFormatException("d1 is out of range");
         if (d2 <= 0 || d2 > MAX_NUM)
             throw new ValueFormatException("d2 is out of range");
 
-        for (int i = 0; i < BLOCK_SIZE * BLOCK_SIZE; i++) {
-            int i_d1 = -1, i_d2 = -1;
-            // Find digits.
-            for (int j = 0; j < BLOCK_SIZE * BLOCK_SIZE; j++) {
-                int x = i % 3 * BLOCK_SIZE + j % 3 + (j / 3 + i / 3 * 3) * FIELD_SIZE;
-                if (solvedSudoku.getAtIndex(x) == d1)
-                    i_d1 = x;
-                else if (solvedSudoku.getAtIndex(x) == d2)
-                    i_d2 = x;
-            }
-
-            if (i_d1 == -1 || i_d2 == -1)
-                throw new ArithmeticException("Unreachable state reached");
+        if (d1 == d2)
+            return false;
 
-            // Swap them.
-            sudoku.swapIndex(i_d1, i_d2);
-        }
+        transform.swapDigits(d1, d2);
         return true;
     }
 
@@ -151,9 +147,7 @@ public class SudokuPropagation {
         if (col1 == col2)
             return false;
 
-        for (int i = 0; i < FIELD_SIZE; i++)
-            sudoku.swapIndex(CompSudoku.getStaticIndex(block * BLOCK_SIZE + col1, i),
-                    CompSudoku.getStaticIndex(block * BLOCK_SIZE + col2, i));
+        transform.swapColumns(block * BLOCK_SIZE + col1, block * BLOCK_SIZE + col2);
         return true;
     }
 
@@ -182,11 +176,12 @@ public class SudokuPropagation {
     public boolean prop3_TwoColumnOfBlock(int col1, int col2) throws ValueFormatException {
         if (col1 < 0 || col1 >= BLOCK_SIZE || col2 < 0 || col2 >= BLOCK_SIZE)
             throw new ValueFormatException("Col1 or col2 are not in range");
-        for (int i = 0; i < FIELD_SIZE; i++) {
-            for (int j = 0; j < BLOCK_SIZE; j++)
-                sudoku.swapIndex(CompSudoku.getStaticIndex(col1 * BLOCK_SIZE + j, i),
-                        CompSudoku.getStaticIndex(col2 * BLOCK_SIZE + j, i));
-        }
+
+        if (col1 == col2)
+            return false;
+
+        for (int j = 0; j < BLOCK_SIZE; j++)
+            transform.swapColumns(col1 * BLOCK_SIZE + j, col2 * BLOCK_SIZE + j);
         return true;
     }
 
@@ -209,65 +204,137 @@ public class SudokuPropagation {
      * @return True if the action had an effect, if else false. <br>
      * (f.E: deg=(360°*n)/90°; n is int)
      */
-    @SuppressWarnings("SuspiciousNameCombination")
     public boolean prop4_GridRolling(int deg) {
         deg = deg % 4;
         if (deg == 0)
             return false;
-        if (deg < 0)
-            deg = 4 + deg;
 
-        CompSudoku su = new CompSudoku(sudoku.getDifficulty());
-        CompSudoku solvedSu = new CompSudoku(sudoku.getDifficulty());
+        transform.rotate(deg);
+        return true;
+    }
 
-        for (int x = 0; x < FIELD_SIZE; x++) {
-            for (int y = 0; y < FIELD_SIZE; y++) {
-                int i = -1;
-                // Everybody with a beautiful, non-switch idea is welcome.
-                switch (deg) {
-                    case 1:
-                        i = CompSudoku.getStaticIndex(FIELD_SIZE - y - 1, x);
-                        break;
-                    case 2:
-                        i = CompSudoku.getStaticIndex(FIELD_SIZE - x - 1, FIELD_SIZE - y - 1);
-                        break;
-                    case 3:
-                        i = CompSudoku.getStaticIndex(y, FIELD_SIZE - x - 1);
-                        break;
-                }
-                // Need to flip solved one and current one.
-                su.setAtField(i, sudoku.getAtIndex(x, y));
-                solvedSu.setAtField(i, solvedSudoku.getAtIndex(x, y));
-            }
-        }
+    //@formatter:off
+    /**
+     * Mirrors the grid at its main diagonal.
+     * <pre><code>
+     * ┌───┬───┬───┐      ┌───┬───┬───┐
+     * │ 1 │ 2 │ 3 │      │ 1 │ 4 │ 7 │
+     * ├───┼───┼───┤      ├───┼───┼───┤
+     * │ 4 │ 5 │ 6 │ ━━━▶ │ 2 │ 5 │ 8 │
+     * ├───┼───┼───┤      ├───┼───┼───┤
+     * │ 7 │ 8 │ 9 │      │ 3 │ 6 │ 9 │
+     * └───┴───┴───┘      └───┴───┴───┘
+     *          transposing
+     * </code></pre>
+     *
+     * @return Always true.
+     */
+    //@formatter:on
+    public boolean prop5_Transposing() {
+        transform.transpose();
+        return true;
+    }
 
-        sudoku = su;
-        solvedSudoku = solvedSu;
+    //@formatter:off
+    /**
+     * Swaps two rows in a specified band.
+     * The same as {@link #prop2_TwoColumnInBlock(int, int, int)}
+     * for rows.
+     *
+     * @param block The band.
+     * @param row1 The first row.
+     * @param row2 The second row.
+     * @return True if the action was useful.
+     * False if the action had no effect (f.E:row1==row2)
+     * @throws ValueFormatException If either of the above
+     * values is out of range.
+     */
+    //@formatter:on
+    public boolean prop6_TwoRowInBlock(int block, int row1, int row2) throws ValueFormatException {
+        if (row1 < 0 || row1 >= BLOCK_SIZE || row2 < 0 || row2 >= BLOCK_SIZE)
+            throw new ValueFormatException("Row1 or row2 are not in range");
+        if (block < 0 || block >= BLOCK_SIZE)
+            throw new ValueFormatException("Bock is out of range");
+
+        if (row1 == row2)
+            return false;
+
+        transform.swapRows(block * BLOCK_SIZE + row1, block * BLOCK_SIZE + row2);
+        return true;
+    }
+
+    //@formatter:off
+    /**
+     * Swaps two bands, the rows of blocks.
+     * The same as {@link #prop3_TwoColumnOfBlock(int, int)}
+     * for rows.
+     *
+     * @param row1 The first band.
+     * @param row2 The second band.
+     * @return True if the action was useful.
+     * False if the action had no effect (f.E:row1==row2)
+     * @throws ValueFormatException If either of the above
+     * values is out of range.
+     */
+    //@formatter:on
+    public boolean prop7_TwoRowOfBlock(int row1, int row2) throws ValueFormatException {
+        if (row1 < 0 || row1 >= BLOCK_SIZE || row2 < 0 || row2 >= BLOCK_SIZE)
+            throw new ValueFormatException("Row1 or row2 are not in range");
+
+        if (row1 == row2)
+            return false;
+
+        for (int j = 0; j < BLOCK_SIZE; j++)
+            transform.swapRows(row1 * BLOCK_SIZE + j, row2 * BLOCK_SIZE + j);
         return true;
     }
 
     /**
-     * Samples randomly three of the four methods
-     * from above. Excludes {@link #prop1_TwoDigits(byte, byte)}.
+     * Samples randomly from all methods above.
+     * The steps are only composed here, the
+     * field is changed once by {@link #getSudoku()}.
      *
      * @param steps The amount of valid steps of sampling.
      * @throws ValueFormatException If an error was thrown. (Heavily unlikely)
      */
     public void randomSampling(int steps) throws ValueFormatException {
-        XoRoShiRo128PlusRandom rand = new XoRoShiRo128PlusRandom();
+        randomSampling(steps, new XoRoShiRo128PlusRandom());
+    }
+
+    /**
+     * Samples randomly from all methods above
+     * with the given random generator.
+     *
+     * @param steps The amount of valid steps of sampling.
+     * @param rand  The random generator.
+     * @throws ValueFormatException If an error was thrown. (Heavily unlikely)
+     */
+    public void randomSampling(int steps, Random rand) throws ValueFormatException {
         for (int i = 0; i < steps; i++) {
             boolean ret = true;
 
-            switch (rand.nextInt(3)) {
+            switch (rand.nextInt(7)) {
                 case 0:
-                    ret = prop2_TwoColumnInBlock(rand.nextInt(BLOCK_SIZE), rand.nextInt(BLOCK_SIZE), rand.nextInt(BLOCK_SIZE));
+                    ret = prop1_TwoDigits((byte) (rand.nextInt(MAX_NUM) + 1), (byte) (rand.nextInt(MAX_NUM) + 1));
                     break;
                 case 1:
-                    ret = prop3_TwoColumnOfBlock(rand.nextInt(BLOCK_SIZE), rand.nextInt(BLOCK_SIZE));
+                    ret = prop2_TwoColumnInBlock(rand.nextInt(BLOCK_SIZE), rand.nextInt(BLOCK_SIZE), rand.nextInt(BLOCK_SIZE));
                     break;
                 case 2:
+                    ret = prop3_TwoColumnOfBlock(rand.nextInt(BLOCK_SIZE), rand.nextInt(BLOCK_SIZE));
+                    break;
+                case 3:
                     ret = prop4_GridRolling(rand.nextInt(3) + 1);
                     break;
+                case 4:
+                    ret = prop5_Transposing();
+                    break;
+                case 5:
+                    ret = prop6_TwoRowInBlock(rand.nextInt(BLOCK_SIZE), rand.nextInt(BLOCK_SIZE), rand.nextInt(BLOCK_SIZE));
+                    break;
+                case 6:
+                    ret = prop7_TwoRowOfBlock(rand.nextInt(BLOCK_SIZE), rand.nextInt(BLOCK_SIZE));
+                    break;
             }
 
             // If action was useless, reuse this step.
@@ -277,9 +344,20 @@ public class SudokuPropagation {
     }
 
     /**
-     * @return The sudoku of this instance.
+     * Applies all steps done so far
+     * to the sudoku and its solution.
+     */
+    private void applySteps() throws ValueFormatException {
+        sudoku = transform.apply(sudoku);
+        transform = new SymmetryTransform();
+    }
+
+    /**
+     * @return The sudoku of this instance,
+     * with its {@link Sudoku#getSolution() solution}.
      */
-    public Sudoku getSudoku() {
+    public Sudoku getSudoku() throws ValueFormatException {
+        applySteps();
         return sudoku;
     }
 }
@@ -28,40 +28,412 @@ import com.georg.Sudoku;
 import com.georg.ValueFormatException;
 
 import java.util.List;
+import java.util.Random;
 
 /**
  * Created by Georg on 30/05/16.
  * <p>
  * A class to solve sudokus in various ways.
  * By use of Depth First Search.
+ * <p>
+ * Every instance keeps its own settings, search
+ * grid and result buffer, so one instance should
+ * be used by one thread at a time. Instances are
+ * cheap, every worker can simply create its own.
+ * The static methods create a new instance for
+ * every call and can be used from any thread.
  */
 public class SudokuSolver {
-    private static Sudoku lastField = null;
-    private static int cSol = 0;
+    /**
+     * The engine new instances start with.
+     */
+    private static volatile SolverEngine defaultEngine = SolverEngine.IN_PLACE;
+    /**
+     * The branching order new instances start with.
+     */
+    private static volatile boolean defaultMostConstrainedFirst = true;
+    /**
+     * The propagation setting new instances start with.
+     */
+    private static volatile boolean defaultPropagation = true;
+
+    /**
+     * The engine used by all searches.
+     */
+    private SolverEngine engine = defaultEngine;
+    /**
+     * True if the in place search branches on
+     * the most constrained field (minimum
+     * remaining values) instead of the next
+     * free field in reading order.
+     */
+    private boolean mostConstrainedFirst = defaultMostConstrainedFirst;
+    /**
+     * True if the in place search fills in all
+     * naked and hidden singles after every
+     * placed number.
+     */
+    private boolean propagation = defaultPropagation;
+    /**
+     * The grid of the in place search. Created
+     * once and reused by every search.
+     */
+    private SearchGrid grid;
+    /**
+     * The last solution found by the {@link #DFSLV(Sudoku, long, int, int)}
+     * search of the expand engine.
+     */
+    private Sudoku lastField;
+    /**
+     * The number of solutions the current
+     * {@link #DFSLV(Sudoku, long, int, int)} search found so far.
+     */
+    private int cSol;
+    /**
+     * Buffer for the last solution found by
+     * the in place search. The sudoku is only
+     * created once the search is done.
+     */
+    private final byte[] lastSolution = new byte[Sudoku.FIELD_COUNT];
+    /**
+     * The maximum number of nodes per search.
+     */
+    private long nodeBudget = Long.MAX_VALUE;
+    /**
+     * The maximum time per search in ms,
+     * 0 for no limit.
+     */
+    private long timeBudget = 0;
+    /**
+     * The budget of the running search.
+     */
+    private final SearchBudget budget = new SearchBudget();
+    /**
+     * Why the last search ended.
+     */
+    private StopReason stopReason;
+
+    /**
+     * Creates a solver with the default settings.
+     *
+     * @see #setDefaultEngine(SolverEngine)
+     * @see #setDefaultMostConstrainedFirst(boolean)
+     * @see #setDefaultPropagation(boolean)
+     */
+    public SudokuSolver() {
+    }
+
+    /**
+     * Creates a solver that uses the engine.
+     *
+     * @param engine The engine.
+     */
+    public SudokuSolver(SolverEngine engine) {
+        this.engine = engine;
+    }
+
+    /**
+     * @return The engine new instances start with.
+     */
+    public static SolverEngine getDefaultEngine() {
+        return defaultEngine;
+    }
+
+    /**
+     * Selects the engine for all solvers created
+     * after this call, including the ones created
+     * by the static methods.
+     *
+     * @param engine The engine.
+     */
+    public static void setDefaultEngine(SolverEngine engine) {
+        defaultEngine = engine;
+    }
+
+    /**
+     * @param mostConstrainedFirst The branching order of all
+     *                             solvers created after this call.
+     * @see #setMostConstrainedFirst(boolean)
+     */
+    public static void setDefaultMostConstrainedFirst(boolean mostConstrainedFirst) {
+        defaultMostConstrainedFirst = mostConstrainedFirst;
+    }
+
+    /**
+     * @param propagation The propagation setting of all
+     *                    solvers created after this call.
+     * @see #setPropagation(boolean)
+     */
+    public static void setDefaultPropagation(boolean propagation) {
+        defaultPropagation = propagation;
+    }
+
+    /**
+     * @return The engine used by the searches.
+     */
+    public SolverEngine getEngine() {
+        return engine;
+    }
+
+    /**
+     * Selects the engine for all following
+     * searches.
+     *
+     * @param engine The engine.
+     */
+    public void setEngine(SolverEngine engine) {
+        this.engine = engine;
+    }
+
+    /**
+     * @return True if the in place search branches
+     * on the field with the fewest candidates.
+     */
+    public boolean isMostConstrainedFirst() {
+        return mostConstrainedFirst;
+    }
+
+    /**
+     * Selects how the {@link SolverEngine#IN_PLACE in place}
+     * search picks the field to branch on. The field with
+     * the fewest candidates cuts the search tree down by
+     * orders of magnitude on hard sudokus. Reading order
+     * visits the solutions in the same order as the
+     * {@link SolverEngine#EXPAND expand} engine, which
+     * changes which solution {@link #DFSLV(Sudoku, long, int, int)}
+     * returns, but never the number of solutions.
+     *
+     * @param mostConstrainedFirst True for the field with the
+     *                             fewest candidates, false
+     *                             for reading order.
+     */
+    public void setMostConstrainedFirst(boolean mostConstrainedFirst) {
+        this.mostConstrainedFirst = mostConstrainedFirst;
+    }
+
+    /**
+     * @return True if the in place search propagates
+     * singles after every placed number.
+     */
+    public boolean isPropagation() {
+        return propagation;
+    }
+
+    /**
+     * Activates the constraint propagation of the
+     * {@link SolverEngine#IN_PLACE in place} search.
+     * After every placed number all naked and hidden
+     * singles are filled in until nothing changes, and
+     * branches without solution are cut as soon as a
+     * contradiction shows up. Most generated sudokus
+     * are solved with hardly any branching that way.
+     * The number of solutions stays the same.
+     *
+     * @param propagation True to propagate.
+     */
+    public void setPropagation(boolean propagation) {
+        this.propagation = propagation;
+    }
+
+    /**
+     * Limits the number of nodes every following
+     * search may visit. A node is one step of the
+     * search, in all engines.
+     *
+     * @param nodes The maximum number of nodes,
+     *              0 or less for no limit.
+     */
+    public void setNodeBudget(long nodes) {
+        nodeBudget = nodes > 0 ? nodes : Long.MAX_VALUE;
+    }
+
+    /**
+     * Limits the time every following search
+     * may take. The clock is only read every
+     * {@value SearchBudget#CHECK_INTERVAL} nodes,
+     * so a search can take slightly longer.
+     *
+     * @param millis The maximum time in ms,
+     *               0 or less for no limit.
+     */
+    public void setTimeBudget(long millis) {
+        timeBudget = Math.max(millis, 0);
+    }
+
+    /**
+     * @return Why the last search ended. Anything but
+     * {@link StopReason#FINISHED} and
+     * {@link StopReason#SOLUTION_LIMIT} means that
+     * the result is incomplete.
+     */
+    public StopReason getStopReason() {
+        return stopReason;
+    }
+
+    /**
+     * @return The number of nodes the
+     * last search visited.
+     */
+    public long getNodes() {
+        return budget.getNodes();
+    }
+
+    /**
+     * Starts the budget for a new search.
+     *
+     * @param deadline The latest end of the search in ms,
+     *                 {@link Long#MAX_VALUE} for none.
+     */
+    private void startBudget(long deadline) {
+        if (timeBudget > 0)
+            deadline = Math.min(deadline, System.currentTimeMillis() + timeBudget);
+        budget.start(nodeBudget, deadline);
+        stopReason = null;
+    }
+
+    /**
+     * Sets {@link #stopReason} after a search.
+     *
+     * @param limitReached True if the search found
+     *                     all solutions it was asked for.
+     */
+    private void finishBudget(boolean limitReached) {
+        if (budget.isStopped())
+            stopReason = budget.getReason();
+        else
+            stopReason = limitReached ? StopReason.SOLUTION_LIMIT : StopReason.FINISHED;
+    }
 
     /**
      * Find number of solutions for given sudoku.
+     * Uses a new solver with the default settings.
      *
      * @param sudoku The sudoku to solve.
      * @return Returns number of solutions.
      */
     @SuppressWarnings("WeakerAccess")
     public static int solutions(Sudoku sudoku) throws ValueFormatException {
-        return DFS(new CompSudoku(sudoku), true);
+        return new SudokuSolver().countSolutions(sudoku);
     }
 
     /**
      * Gives an answer to the question:
      * "Is the sudoku solvable."
-     * This is a faster variant of {@link #solutions(Sudoku)}
-     * if the sudoku has a solution.
+     * Uses a new solver with the default settings.
      *
      * @param sudoku The sudoku to evaluate.
      * @return True if the sudoku is solvable.
      */
     @SuppressWarnings("WeakerAccess")
     public static boolean isSolvable(Sudoku sudoku) throws ValueFormatException {
-        return DFS(new CompSudoku(sudoku), false) > 0;
+        return new SudokuSolver().hasSolution(sudoku);
+    }
+
+    /**
+     * Find number of solutions for given sudoku,
+     * but stops counting at the limit.
+     * Uses a new solver with the default settings.
+     *
+     * @param sudoku The sudoku to solve.
+     * @param limit  The highest number of interest.
+     * @return Returns number of solutions, at most limit.
+     * @see #countSolutions(Sudoku, int)
+     */
+    public static int solutions(Sudoku sudoku, int limit) throws ValueFormatException {
+        return new SudokuSolver().countSolutions(sudoku, limit);
+    }
+
+    /**
+     * Find number of solutions for given sudoku.
+     *
+     * @param sudoku The sudoku to solve.
+     * @return Returns number of solutions.
+     */
+    public int countSolutions(Sudoku sudoku) throws ValueFormatException {
+        return countSolutions(sudoku, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Find number of solutions for given sudoku,
+     * but stops the search as soon as the limit
+     * is reached. Most questions only need a small
+     * limit, f.E. a limit of 2 tells if a sudoku
+     * has no, exactly one or more solutions.
+     * <p>
+     * The search respects the node and time budget,
+     * see {@link #getStopReason()} for the cause
+     * of a stop.
+     *
+     * @param sudoku The sudoku to solve.
+     * @param limit  The highest number of interest.
+     * @return Returns number of solutions, at most limit.
+     */
+    public int countSolutions(Sudoku sudoku, int limit) throws ValueFormatException {
+        startBudget(Long.MAX_VALUE);
+        int count = 0;
+        if (limit <= 0)
+            limit = 0;
+        else if (engine == SolverEngine.DANCING_LINKS)
+            count = new DancingLinksSolver(sudoku).count(limit, false, budget);
+        else if (engine == SolverEngine.IN_PLACE)
+            count = loadGrid(sudoku) ? DFS(grid, 0, limit) : 0;
+        else
+            count = DFS(new CompSudoku(sudoku), limit);
+        finishBudget(count >= limit);
+        return count;
+    }
+
+    /**
+     * Gives an answer to the question:
+     * "Is the sudoku solvable."
+     * This is a faster variant of {@link #countSolutions(Sudoku)}
+     * if the sudoku has a solution.
+     *
+     * @param sudoku The sudoku to evaluate.
+     * @return True if the sudoku is solvable.
+     */
+    public boolean hasSolution(Sudoku sudoku) throws ValueFormatException {
+        return countSolutions(sudoku, 1) > 0;
+    }
+
+    /**
+     * Loads the sudoku into the reused grid
+     * of the in place search.
+     *
+     * @param sudoku The sudoku.
+     * @return False if the sudoku has no solution.
+     */
+    private boolean loadGrid(Sudoku sudoku) {
+        if (grid == null)
+            grid = new SearchGrid();
+        grid.load(sudoku);
+        return !propagation || grid.propagate();
+    }
+
+    /**
+     * Places a number and propagates
+     * it if {@link #propagation} is on.
+     *
+     * @param grid  The grid.
+     * @param index The index.
+     * @param bit   The number as a single bit mask.
+     * @return False if the grid has no solution anymore.
+     */
+    private boolean place(SearchGrid grid, int index, int bit) {
+        grid.place(index, bit);
+        return !propagation || grid.propagate();
+    }
+
+    /**
+     * Picks the field the in place search branches on.
+     *
+     * @param grid The grid.
+     * @param from The index to start looking for
+     *             free fields in reading order.
+     * @return The index, -1 if the grid is full.
+     */
+    private int nextIndex(SearchGrid grid, int from) {
+        return mostConstrainedFirst ? grid.mostConstrained() : grid.nextFree(from);
     }
 
     /**
@@ -71,12 +443,13 @@ public class SudokuSolver {
      * out every valid combination of on the field.
      *
      * @param sudoku The sudoku to solve.
-     * @param end    False if just one solution should
-     *               be found, true if the total number
-     *               of all possible solution should returned.
+     * @param limit  The search stops as soon as this
+     *               number of solutions is found.
      * @return Returns the number of solutions found.
      */
-    private static int DFS(CompSudoku sudoku, boolean end) throws ValueFormatException {
+    private int DFS(CompSudoku sudoku, int limit) throws ValueFormatException {
+        if (budget.exhausted())
+            return 0;
         if (sudoku.isIndexLast())
             return 1;
 
@@ -86,38 +459,69 @@ public class SudokuSolver {
 
         int sum = 0;
         for (CompSudoku comp : compSudokus) {
-            sum += DFS(comp, end);
-            if (!end && sum != 0)
+            sum += DFS(comp, limit - sum);
+            if (sum >= limit || budget.isStopped())
                 break;
         }
 
         return sum;
     }
 
+    /**
+     * The in place variant of {@link #DFS(CompSudoku, int)}.
+     * Works directly on the grid and takes back every
+     * placed number before it returns, so the grid is
+     * unchanged afterwards.
+     *
+     * @param grid The grid to solve.
+     * @param from  The index to start looking for free fields.
+     * @param limit The search stops as soon as this
+     *              number of solutions is found.
+     * @return Returns the number of solutions found.
+     */
+    private int DFS(SearchGrid grid, int from, int limit) {
+        if (budget.exhausted())
+            return 0;
+        int index = nextIndex(grid, from);
+        if (index < 0)
+            return 1;
+
+        int sum = 0;
+        int mark = grid.mark();
+        for (int possible = grid.getCandidates(index); possible != 0; possible &= possible - 1) {
+            if (place(grid, index, possible & -possible))
+                sum += DFS(grid, index + 1, limit - sum);
+            grid.undo(mark);
+            if (sum >= limit || budget.isStopped())
+                break;
+        }
+
+        return sum;
+    }
 
     /**
-     * Securly returns the found
-     * result from the
-     * {@link #DFSLV(CompSudoku, long, int, int) Depth first seach for Las Vegas}
-     * method.
-     * <p>
-     * It also will reset the internal used {@link #cSol counter}
-     * and the {@link #lastField buffer field}.
+     * Searches the first solution of the field.
+     * Only the node and time budget of this
+     * solver limit the search.
      *
-     * @return Returns the found field.
+     * @param sudoku The field to solve.
+     * @return The solution, null if there is none
+     * or the budget ran out, see {@link #getStopReason()}.
+     * @see #DFSLV(Sudoku, long, int, int)
      */
-    public static Sudoku getLastField() {
-        cSol = 0;
-        Sudoku su = lastField;
-        lastField = null;
-        return su;
+    public Sudoku solve(Sudoku sudoku) throws ValueFormatException {
+        return DFSLV(sudoku, Long.MAX_VALUE, 0, 1);
     }
 
     /**
      * Tries to find a solution for a given field
      * and returns the solution.
-     * The actual result of this method
-     * can be accessed through {@link #getLastField()}.
+     * <p>
+     * The search stops at <code>start + maxTime</code>,
+     * or earlier if the node or time budget of this
+     * solver runs out. It then returns the last solution
+     * found so far, {@link #getStopReason()} tells
+     * if the search was cut short.
      *
      * @param sudoku  The field to solve
      * @param start   The time of start
@@ -126,29 +530,193 @@ public class SudokuSolver {
      * @param maxSol  The maximum number of solutions,
      *                till the function returns.
      *                This allows for more diverse fields.
-     * @return The sudoku field.
+     * @return The last solution found, null if
+     * there is none.
+     */
+    public Sudoku DFSLV(Sudoku sudoku, final long start, final int maxTime, final int maxSol) throws ValueFormatException {
+        cSol = 0;
+        lastField = null;
+        startBudget(start + maxTime);
+        Sudoku ret;
+        if (engine == SolverEngine.DANCING_LINKS) {
+            DancingLinksSolver dlx = new DancingLinksSolver(sudoku);
+            cSol = dlx.count(Math.max(maxSol, 1), true, budget);
+            ret = cSol == 0 ? null : new Sudoku(sudoku.getDifficulty(), dlx.getSolution());
+        } else if (engine == SolverEngine.IN_PLACE) {
+            if (loadGrid(sudoku))
+                DFSLV(grid, 0, maxSol);
+            // Only now the found solution becomes a sudoku.
+            ret = cSol == 0 ? null : new Sudoku(sudoku.getDifficulty(), lastSolution);
+        } else {
+            CompSudoku comp = new CompSudoku(sudoku);
+            if (comp.isIndexLast()) {
+                cSol = 1;
+                ret = comp;
+            } else {
+                DFSLV(comp, maxSol);
+                ret = lastField;
+            }
+        }
+        finishBudget(cSol >= Math.max(maxSol, 1));
+        return ret;
+    }
+
+    /**
+     * The recursive search of the expand engine
+     * for {@link #DFSLV(Sudoku, long, int, int)}.
+     * The result is written into {@link #lastField}.
+     *
+     * @param sudoku The field to solve
+     * @param maxSol The maximum number of solutions,
+     *               till the function returns.
+     * @return The sudoku if it is solved, else null.
      */
-    public static Sudoku DFSLV(CompSudoku sudoku, final long start, final int maxTime, final int maxSol) throws ValueFormatException {
+    private Sudoku DFSLV(CompSudoku sudoku, final int maxSol) throws ValueFormatException {
+        if (budget.exhausted())
+            return null;
         if (sudoku.isIndexLast())
             return sudoku;
 
-        //if (System.currentTimeMillis() - start > maxTime)
-        //    return null;
-
         List<CompSudoku> compSudokus = sudoku.expand();
         if (compSudokus.size() == 0)
             return null;
 
         for (CompSudoku comp : compSudokus) {
-            Sudoku ret = DFSLV(comp, start, maxTime, maxSol);
+            Sudoku ret = DFSLV(comp, maxSol);
             if (ret != null) {
                 if (cSol <= maxSol)
                     lastField = ret;
                 cSol++;
             }
-            if (cSol == maxSol)
+            if (cSol >= maxSol || budget.isStopped())
                 return null;
         }
         return null;
     }
+
+    /**
+     * The in place variant of {@link #DFSLV(CompSudoku, int)}.
+     * Copies the wanted solution into {@link #lastSolution}.
+     *
+     * @param grid   The grid to solve.
+     * @param from   The index to start looking for free fields.
+     * @param maxSol The maximum number of solutions,
+     *               till the function returns.
+     * @return True if the search should stop.
+     */
+    private boolean DFSLV(SearchGrid grid, int from, final int maxSol) {
+        if (budget.exhausted())
+            return true;
+        int index = nextIndex(grid, from);
+        if (index < 0) {
+            if (cSol <= maxSol)
+                grid.copyTo(lastSolution);
+            cSol++;
+            return cSol >= maxSol;
+        }
+
+        int mark = grid.mark();
+        for (int possible = grid.getCandidates(index); possible != 0; possible &= possible - 1) {
+            boolean stop = place(grid, index, possible & -possible) && DFSLV(grid, index + 1, maxSol);
+            grid.undo(mark);
+            if (stop)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Searches the first solution of a grid,
+     * that is already loaded. Used by the
+     * {@link UniquenessChecker}, which prepares
+     * its grids itself. The grid is left with
+     * more fields filled than before, the caller
+     * has to {@link SearchGrid#undo(int) undo} it.
+     *
+     * @param grid     The grid to solve.
+     * @param solution The array for the solution.
+     * @return True if a solution was found.
+     */
+    boolean findSolution(SearchGrid grid, byte[] solution) {
+        cSol = 0;
+        startBudget(Long.MAX_VALUE);
+        if (!propagation || grid.propagate())
+            DFSLV(grid, 0, 1);
+        finishBudget(cSol > 0);
+        if (cSol == 0)
+            return false;
+        System.arraycopy(lastSolution, 0, solution, 0, Sudoku.FIELD_COUNT);
+        return true;
+    }
+
+    /**
+     * Searches one solution of the field and
+     * tries the candidates of every field in
+     * a random order. A terminal pattern then
+     * takes a single descent, instead of counting
+     * through many solutions to pick one of them.
+     * <p>
+     * Always runs on the in place grid, whatever
+     * {@link #getEngine() engine} is set. The node
+     * and time budget of this solver apply.
+     *
+     * @param sudoku The field to solve
+     * @param rand   The random generator for the
+     *               order of the candidates.
+     * @return A random solution, null if there is
+     * none or the budget ran out.
+     */
+    public Sudoku randomSolution(Sudoku sudoku, Random rand) throws ValueFormatException {
+        cSol = 0;
+        startBudget(Long.MAX_VALUE);
+        if (loadGrid(sudoku))
+            randomDFS(grid, 0, rand);
+        finishBudget(cSol > 0);
+        return cSol == 0 ? null : new Sudoku(sudoku.getDifficulty(), lastSolution);
+    }
+
+    /**
+     * The recursive search of
+     * {@link #randomSolution(Sudoku, Random)}.
+     * The solution is written into {@link #lastSolution}.
+     *
+     * @param grid The grid to solve
+     * @param from The index to continue from.
+     * @param rand The random generator.
+     * @return True if the search should stop.
+     */
+    private boolean randomDFS(SearchGrid grid, int from, Random rand) {
+        if (budget.exhausted())
+            return true;
+        int index = nextIndex(grid, from);
+        if (index < 0) {
+            grid.copyTo(lastSolution);
+            cSol = 1;
+            return true;
+        }
+
+        int mark = grid.mark();
+        int possible = grid.getCandidates(index);
+        while (possible != 0) {
+            int bit = randomBit(possible, rand);
+            possible &= ~bit;
+            boolean stop = place(grid, index, bit) && randomDFS(grid, index + 1, rand);
+            grid.undo(mark);
+            if (stop)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * @param mask A non empty bit mask.
+     * @param rand The random generator.
+     * @return One of the set bits of the mask,
+     * each with the same chance.
+     */
+    private static int randomBit(int mask, Random rand) {
+        for (int k = rand.nextInt(Integer.bitCount(mask)); k > 0; k--)
+            mask &= mask - 1;
+        return mask & -mask;
+    }
 }
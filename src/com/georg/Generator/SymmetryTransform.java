@@ -0,0 +1,263 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 Georg A. Friedrich
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.georg.Generator;
+
+import com.georg.Level;
+import com.georg.Sudoku;
+import com.georg.ValueFormatException;
+
+import java.util.Random;
+
+import static com.georg.Sudoku.*;
+
+/**
+ * A member of the symmetry group of sudoku,
+ * that maps every valid field onto a valid field:
+ * <ul>
+ * <li>Relabelling of the digits</li>
+ * <li>Swapping rows in a band and columns in a stack</li>
+ * <li>Swapping bands and stacks</li>
+ * <li>Transposition</li>
+ * </ul>
+ * Rotations and mirrors are combinations of these.
+ * <p>
+ * The transform is stored as a cell permutation
+ * and a digit map, so applying it to a field
+ * takes exactly one pass over the 81 fields.
+ * The swap methods add one more step after the
+ * current transform, that way many steps can be
+ * composed before the field is touched.
+ */
+public final class SymmetryTransform {
+    /**
+     * The new field at index <b>i</b> gets the
+     * value of the old field at <code>source[i]</code>.
+     */
+    private final int[] source = new int[FIELD_COUNT];
+    /**
+     * The new number of every old number.
+     * Index 0 is unused.
+     */
+    private final byte[] digit = new byte[MAX_NUM + 1];
+
+    /**
+     * Creates the identity transform.
+     */
+    public SymmetryTransform() {
+        for (int i = 0; i < FIELD_COUNT; i++)
+            source[i] = i;
+        for (byte d = 1; d <= MAX_NUM; d++)
+            digit[d] = d;
+    }
+
+    /**
+     * Draws a random member of the group.
+     * Every member has the same chance.
+     *
+     * @param rand The random generator.
+     * @return The new transform.
+     */
+    public static SymmetryTransform random(Random rand) {
+        SymmetryTransform t = new SymmetryTransform();
+        int[] rows = randomLines(rand);
+        int[] cols = randomLines(rand);
+        boolean transpose = rand.nextBoolean();
+        for (int r = 0; r < FIELD_SIZE; r++) {
+            for (int c = 0; c < FIELD_SIZE; c++) {
+                t.source[r * FIELD_SIZE + c] = transpose
+                        ? rows[c] * FIELD_SIZE + cols[r]
+                        : rows[r] * FIELD_SIZE + cols[c];
+            }
+        }
+        for (int d = MAX_NUM; d > 1; d--) {
+            int k = rand.nextInt(d) + 1;
+            byte tmp = t.digit[d];
+            t.digit[d] = t.digit[k];
+            t.digit[k] = tmp;
+        }
+        return t;
+    }
+
+    /**
+     * Creates a random order of the rows (or
+     * columns) that keeps the bands together.
+     *
+     * @param rand The random generator.
+     * @return The old line for every new line.
+     */
+    private static int[] randomLines(Random rand) {
+        int[] bands = shuffled(rand);
+        int[] lines = new int[FIELD_SIZE];
+        for (int b = 0; b < BLOCK_SIZE; b++) {
+            int[] inner = shuffled(rand);
+            for (int k = 0; k < BLOCK_SIZE; k++)
+                lines[b * BLOCK_SIZE + k] = bands[b] * BLOCK_SIZE + inner[k];
+        }
+        return lines;
+    }
+
+    /**
+     * @param rand The random generator.
+     * @return A random order of [0, {@link Sudoku#BLOCK_SIZE BLOCK_SIZE}).
+     */
+    private static int[] shuffled(Random rand) {
+        int[] ret = new int[BLOCK_SIZE];
+        for (int i = 0; i < BLOCK_SIZE; i++) {
+            int k = rand.nextInt(i + 1);
+            ret[i] = ret[k];
+            ret[k] = i;
+        }
+        return ret;
+    }
+
+    /**
+     * @param index The index on the transformed field.
+     * @return The index on the original field,
+     * where the value comes from.
+     */
+    int sourceOf(int index) {
+        return source[index];
+    }
+
+    /**
+     * Swaps two numbers after the transform.
+     *
+     * @param d1 The first number [1, {@link Sudoku#MAX_NUM MAX_NUM}].
+     * @param d2 The second number [1, {@link Sudoku#MAX_NUM MAX_NUM}].
+     */
+    public void swapDigits(byte d1, byte d2) {
+        for (int d = 1; d <= MAX_NUM; d++) {
+            if (digit[d] == d1)
+                digit[d] = d2;
+            else if (digit[d] == d2)
+                digit[d] = d1;
+        }
+    }
+
+    /**
+     * Swaps two columns after the transform.
+     * Only keeps the field valid if both
+     * are in the same stack.
+     *
+     * @param c1 The first column [0, 8].
+     * @param c2 The second column [0, 8].
+     */
+    public void swapColumns(int c1, int c2) {
+        for (int r = 0; r < FIELD_COUNT; r += FIELD_SIZE)
+            swap(r + c1, r + c2);
+    }
+
+    /**
+     * Swaps two rows after the transform.
+     * Only keeps the field valid if both
+     * are in the same band.
+     *
+     * @param r1 The first row [0, 8].
+     * @param r2 The second row [0, 8].
+     */
+    public void swapRows(int r1, int r2) {
+        for (int c = 0; c < FIELD_SIZE; c++)
+            swap(r1 * FIELD_SIZE + c, r2 * FIELD_SIZE + c);
+    }
+
+    /**
+     * Mirrors the field at the main diagonal
+     * after the transform.
+     */
+    public void transpose() {
+        for (int r = 0; r < FIELD_SIZE; r++)
+            for (int c = r + 1; c < FIELD_SIZE; c++)
+                swap(r * FIELD_SIZE + c, c * FIELD_SIZE + r);
+    }
+
+    /**
+     * Rotates the field clockwise after the
+     * transform. One rotation is a transposition
+     * followed by a mirror of the columns.
+     *
+     * @param deg The amount of degrees (/90°) to rotate.
+     */
+    public void rotate(int deg) {
+        deg = ((deg % 4) + 4) % 4;
+        for (int i = 0; i < deg; i++) {
+            transpose();
+            for (int c = 0; c < FIELD_SIZE / 2; c++)
+                swapColumns(c, FIELD_SIZE - 1 - c);
+        }
+    }
+
+    /**
+     * @param i1 The first index.
+     * @param i2 The second index.
+     */
+    private void swap(int i1, int i2) {
+        int tmp = source[i1];
+        source[i1] = source[i2];
+        source[i2] = tmp;
+    }
+
+    /**
+     * Applies the transform. Free fields
+     * ({@link Sudoku#NAN NAN}) stay free.
+     *
+     * @param from The field to transform.
+     * @param to   The array for the transformed
+     *             field, must not be <b>from</b>.
+     */
+    public void apply(byte[] from, byte[] to) {
+        for (int i = 0; i < FIELD_COUNT; i++) {
+            byte v = from[source[i]];
+            to[i] = v == NAN ? v : digit[v];
+        }
+    }
+
+    /**
+     * Applies the transform to a sudoku
+     * and its solution, if it is known.
+     *
+     * @param sudoku The sudoku to transform.
+     * @return The transformed sudoku, with
+     * the same level.
+     */
+    public Sudoku apply(Sudoku sudoku) throws ValueFormatException {
+        Sudoku solution = sudoku.getSolution() == null ? null : apply(sudoku.getSolution());
+        byte[] ret = new byte[FIELD_COUNT];
+        apply(sudoku.getField(), ret);
+        return new Sudoku(sudoku.getDifficulty(), ret, solution);
+    }
+
+    /**
+     * Applies the transform to a field.
+     *
+     * @param l     The level of the new sudoku.
+     * @param field The field to transform.
+     * @return The transformed sudoku.
+     */
+    Sudoku apply(Level l, byte[] field) throws ValueFormatException {
+        byte[] ret = new byte[FIELD_COUNT];
+        apply(field, ret);
+        return new Sudoku(l, ret);
+    }
+}
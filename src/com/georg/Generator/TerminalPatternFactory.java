@@ -0,0 +1,153 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 Georg A. Friedrich
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.georg.Generator;
+
+import com.georg.Level;
+import com.georg.Sudoku;
+import com.georg.ValueFormatException;
+import it.unimi.dsi.util.XoRoShiRo128PlusRandom;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Creates terminal patterns from a small bank
+ * of full grids. Every pattern is a bank grid
+ * under a random {@link SymmetryTransform}, so
+ * it costs one pass over the field instead of
+ * a {@link LasVegasAlgorithm} search.
+ * <p>
+ * The bank is filled on demand and one grid
+ * of it is replaced by a fresh Las Vegas pattern
+ * every {@link #getRefreshInterval() refresh interval},
+ * so the generated patterns do not stay within a
+ * few equivalence classes. Can be used from
+ * many threads at once.
+ */
+public class TerminalPatternFactory {
+    /**
+     * The default number of grids in the bank.
+     */
+    public static final int DEFAULT_BANK_SIZE = 32;
+    /**
+     * The default number of patterns
+     * between two fresh grids.
+     */
+    public static final int DEFAULT_REFRESH_INTERVAL = 64;
+    /**
+     * The factory of {@link StaticGenerator}.
+     */
+    private static final TerminalPatternFactory shared = new TerminalPatternFactory();
+
+    /**
+     * The grids, null till they are needed
+     * the first time. A stored grid is never
+     * changed, only replaced.
+     */
+    private final AtomicReferenceArray<byte[]> bank;
+    /**
+     * The number of patterns between two fresh
+     * grids. 0 if the bank is never refreshed.
+     */
+    private final int refreshInterval;
+    /**
+     * The number of patterns created so far.
+     */
+    private final AtomicLong created = new AtomicLong();
+
+    /**
+     * Creates a factory with the default
+     * bank size and refresh interval.
+     */
+    public TerminalPatternFactory() {
+        this(DEFAULT_BANK_SIZE, DEFAULT_REFRESH_INTERVAL);
+    }
+
+    /**
+     * @param bankSize        The number of grids in the bank,
+     *                        at least 1.
+     * @param refreshInterval The number of patterns between
+     *                        two fresh grids, 0 to never
+     *                        refresh the bank.
+     */
+    public TerminalPatternFactory(int bankSize, int refreshInterval) {
+        bank = new AtomicReferenceArray<>(Math.max(bankSize, 1));
+        this.refreshInterval = Math.max(refreshInterval, 0);
+    }
+
+    /**
+     * @return The factory shared by the generators.
+     */
+    public static TerminalPatternFactory getShared() {
+        return shared;
+    }
+
+    /**
+     * @return The number of grids in the bank.
+     */
+    public int getBankSize() {
+        return bank.length();
+    }
+
+    /**
+     * @return The number of patterns between two
+     * fresh grids, 0 if the bank is never refreshed.
+     */
+    public int getRefreshInterval() {
+        return refreshInterval;
+    }
+
+    /**
+     * Creates a terminal pattern with a
+     * self seeded random generator.
+     *
+     * @param l The playing level.
+     * @return A new terminal pattern.
+     * @see #next(Level, Random)
+     */
+    public Sudoku next(Level l) throws ValueFormatException {
+        return next(l, new XoRoShiRo128PlusRandom());
+    }
+
+    /**
+     * Creates a terminal pattern.
+     *
+     * @param l    The playing level.
+     * @param rand The random generator for the
+     *             choice of grid and transform.
+     * @return A new terminal pattern.
+     */
+    public Sudoku next(Level l, Random rand) throws ValueFormatException {
+        long n = created.getAndIncrement();
+        int slot = rand.nextInt(bank.length());
+        byte[] grid = bank.get(slot);
+        if (grid == null || (refreshInterval > 0 && n % refreshInterval == refreshInterval - 1)) {
+            grid = LasVegasAlgorithm.LasVegas(Level.None, rand).getField();
+            bank.set(slot, grid);
+        }
+        return SymmetryTransform.random(rand).apply(l, grid);
+    }
+}
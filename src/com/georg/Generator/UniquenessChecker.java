@@ -0,0 +1,467 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 Georg A. Friedrich
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.georg.Generator;
+
+import com.georg.Sudoku;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.georg.FieldTables.COL_OF;
+import static com.georg.FieldTables.ROW_OF;
+import static com.georg.Sudoku.*;
+
+/**
+ * Decides for the {@link SudokuGen} if a hole
+ * can be dug into the current puzzle without
+ * losing the unique solution.
+ * <p>
+ * All puzzles dug from one terminal pattern have
+ * that pattern as a solution, so a hole keeps the
+ * puzzle unique, if no other number fits into it
+ * (Reduction to absurdity, like in the paper).
+ * Every second solution found on the way is kept
+ * as a witness. A witness differs from the terminal
+ * pattern only on a few fields. Once all of them
+ * except the new hole are free, the witness proves
+ * the hole wrong without any search. The puzzle only
+ * loses givens while digging, so a witness never
+ * becomes wrong and stays useful for every later
+ * dig and for re-digs of the same pattern.
+ * <p>
+ * The other way round every hole shown to keep the
+ * puzzle unique is kept as a proof, the givens left
+ * after the hole. More givens keep a unique puzzle
+ * unique, so a hole is proven right without a search
+ * if the givens left after it hold all of a proof.
+ * This helps the re-digs of a pattern and the
+ * speculative checks, which run on fewer givens.
+ * <p>
+ * {@link #check(long, long, int, boolean)} can run on
+ * other threads for a speculative look ahead,
+ * witnesses and proofs are shared by all of them.
+ * Every thread keeps its own search objects.
+ * <p>
+ * The searches always run in place on a {@link SearchGrid},
+ * which keeps the givens between two checks. The
+ * {@link SudokuSolver#setDefaultEngine(SolverEngine) engine}
+ * setting does not apply to them, only to solving and
+ * counting, f.E. the last check of a {@link GenerationPipeline}.
+ * <p>
+ * Next to the givens the checker counts them per row
+ * and column, so the bounds of a level are checked
+ * before a hole is dug into the sudoku itself.
+ */
+final class UniquenessChecker {
+    /**
+     * The maximum number of witnesses kept.
+     * The oldest one is replaced if more are found.
+     */
+    static final int MAX_WITNESSES = 256;
+    /**
+     * The maximum number of proofs kept.
+     * The oldest one is replaced if more are found.
+     */
+    static final int MAX_PROOFS = 256;
+
+    /**
+     * The terminal pattern.
+     */
+    private final byte[] solution;
+    /**
+     * The fields on which every witness differs
+     * from the terminal pattern as 81 bit sets,
+     * split into the first 64 fields and the rest.
+     * Guarded by the lock of this instance.
+     */
+    private final long[] witnessLow = new long[MAX_WITNESSES];
+    private final long[] witnessHigh = new long[MAX_WITNESSES];
+    /**
+     * The number of witnesses.
+     */
+    private int witnesses;
+    /**
+     * The slot for the next witness,
+     * once the bank is full.
+     */
+    private int nextWitness;
+    /**
+     * The givens left after every proven hole,
+     * in the same layout as the witnesses.
+     * Guarded by the lock of this instance.
+     */
+    private final long[] proofLow = new long[MAX_PROOFS];
+    private final long[] proofHigh = new long[MAX_PROOFS];
+    /**
+     * The number of proofs.
+     */
+    private int proofs;
+    /**
+     * The slot for the next proof,
+     * once the bank is full.
+     */
+    private int nextProof;
+    /**
+     * The givens of the current puzzle, as a bit set.
+     */
+    private long givenLow, givenHigh;
+    /**
+     * The number of givens in every row and column.
+     */
+    private final int[] rowGivens = new int[FIELD_SIZE], colGivens = new int[FIELD_SIZE];
+    /**
+     * The total number of givens.
+     */
+    private int givens;
+    /**
+     * The search objects of every thread. The grid and
+     * solver are reused by all checks of a thread.
+     */
+    private static final ThreadLocal<Search> SEARCH = ThreadLocal.withInitial(Search::new);
+    /**
+     * The number of holes decided by a witness,
+     * by a proof and by a search.
+     */
+    private final AtomicLong witnessHits = new AtomicLong(), proofHits = new AtomicLong(),
+            searches = new AtomicLong();
+
+    /**
+     * The objects one thread needs to search.
+     * The grid keeps the givens of the last check,
+     * the next check only changes the fields in
+     * which its givens differ.
+     */
+    private static final class Search {
+        /**
+         * The grid for the searches.
+         */
+        private final SearchGrid grid = new SearchGrid();
+        /**
+         * The solver for the searches.
+         */
+        private final SudokuSolver solver = new SudokuSolver();
+        /**
+         * The puzzle to load into the grid
+         * and the second solutions found.
+         */
+        private final byte[] scratch = new byte[FIELD_COUNT];
+        /**
+         * The checker of the pattern in the grid.
+         */
+        private UniquenessChecker owner;
+        /**
+         * The givens in the grid.
+         */
+        private long low, high;
+    }
+
+    /**
+     * @param terminal The terminal pattern to dig.
+     */
+    UniquenessChecker(Sudoku terminal) {
+        solution = terminal.getField();
+        reset();
+    }
+
+    /**
+     * Starts over with the full terminal
+     * pattern. The witnesses are kept.
+     */
+    void reset() {
+        givenLow = -1L;
+        givenHigh = (1L << (FIELD_COUNT - 64)) - 1;
+        Arrays.fill(rowGivens, FIELD_SIZE);
+        Arrays.fill(colGivens, FIELD_SIZE);
+        givens = FIELD_COUNT;
+    }
+
+    /**
+     * @param index The index.
+     * @return True if the index is a given
+     * of the current puzzle.
+     */
+    boolean isGiven(int index) {
+        return isGiven(givenLow, givenHigh, index);
+    }
+
+    /**
+     * @param low   The first 64 fields of a set.
+     * @param high  The other fields of the set.
+     * @param index The index.
+     * @return True if the index is in the set.
+     */
+    private static boolean isGiven(long low, long high, int index) {
+        return index < 64 ? (low & (1L << index)) != 0 : (high & (1L << (index - 64))) != 0;
+    }
+
+    /**
+     * @return The first 64 fields of the givens
+     * of the current puzzle, for {@link #check(long, long, int, boolean)}.
+     */
+    long getGivenLow() {
+        return givenLow;
+    }
+
+    /**
+     * @return The other fields of the givens
+     * of the current puzzle, for {@link #check(long, long, int, boolean)}.
+     */
+    long getGivenHigh() {
+        return givenHigh;
+    }
+
+    /**
+     * @return The number of givens of the current puzzle.
+     */
+    int getGivens() {
+        return givens;
+    }
+
+    /**
+     * @param index The index of a given.
+     * @return The lower bound of givens for all rows
+     * and columns, if the index would be dug.
+     */
+    int getLowerBoundRC(int index) {
+        int lowerBound = Math.min(rowGivens[ROW_OF[index]], colGivens[COL_OF[index]]) - 1;
+        for (int i = 0; i < FIELD_SIZE; i++)
+            lowerBound = Math.min(Math.min(rowGivens[i], colGivens[i]), lowerBound);
+        return lowerBound;
+    }
+
+    /**
+     * Removes a given from the current puzzle.
+     * Should only be called if {@link #canDig(int)}
+     * returned true.
+     *
+     * @param index The index.
+     */
+    void dig(int index) {
+        if (index < 64)
+            givenLow &= ~(1L << index);
+        else
+            givenHigh &= ~(1L << (index - 64));
+        rowGivens[ROW_OF[index]]--;
+        colGivens[COL_OF[index]]--;
+        givens--;
+    }
+
+    /**
+     * Checks if the current puzzle keeps
+     * its unique solution without the given
+     * on the index. Does not change the puzzle.
+     *
+     * @param index The index, must be a given.
+     * @return True if the hole can be dug.
+     */
+    boolean canDig(int index) {
+        return check(givenLow, givenHigh, index, true);
+    }
+
+    /**
+     * The same as {@link #canDig(int)} for any
+     * set of givens. Can be called from any thread.
+     * Givens with more than one solution are allowed,
+     * f.E. a puzzle with holes that are not dug yet.
+     * Then true means that every unique puzzle with
+     * these givens can dig the hole.
+     *
+     * @param low    The first 64 fields of the givens.
+     * @param high   The other fields of the givens.
+     * @param index  The index, must be a given.
+     * @param unique True if the givens have a unique
+     *               solution, only then a proof is kept.
+     * @return True if the hole can be dug.
+     */
+    boolean check(long low, long high, int index, boolean unique) {
+        if (hasWitness(low, high, index)) {
+            witnessHits.incrementAndGet();
+            return false;
+        }
+        long leftLow = index < 64 ? low & ~(1L << index) : low;
+        long leftHigh = index < 64 ? high : high & ~(1L << (index - 64));
+        if (hasProof(leftLow, leftHigh)) {
+            proofHits.incrementAndGet();
+            return true;
+        }
+
+        searches.incrementAndGet();
+        Search search = SEARCH.get();
+        SearchGrid grid = load(search, low, high);
+        grid.clear(index);
+        // Every other number that fits into the hole.
+        int others = grid.getCandidates(index) & ~(1 << (solution[index] - 1));
+        boolean found = false;
+        for (; others != 0 && !found; others &= others - 1) {
+            grid.place(index, others & -others);
+            found = search.solver.findSolution(grid, search.scratch);
+            grid.undo(0);
+        }
+        grid.set(index, solution[index]);
+        if (found) {
+            addWitness(search.scratch);
+            return false;
+        }
+        // Without a unique solution only the number in the hole is sure.
+        if (unique)
+            addProof(leftLow, leftHigh);
+        return true;
+    }
+
+    /**
+     * Brings the givens into the grid of the search.
+     * If the grid holds this pattern already, only the
+     * fields that differ are changed, else it is loaded.
+     *
+     * @param search The search objects of the thread.
+     * @param low    The first 64 fields of the givens.
+     * @param high   The other fields of the givens.
+     * @return The grid, with nothing placed.
+     */
+    private SearchGrid load(Search search, long low, long high) {
+        SearchGrid grid = search.grid;
+        if (search.owner != this) {
+            byte[] scratch = search.scratch;
+            for (int i = 0; i < FIELD_COUNT; i++)
+                scratch[i] = isGiven(low, high, i) ? solution[i] : (byte) NAN;
+            grid.load(scratch);
+            search.owner = this;
+        } else {
+            // Holes first, so every set number is a candidate.
+            update(grid, search.low & ~low, 0, false);
+            update(grid, search.high & ~high, 64, false);
+            update(grid, low & ~search.low, 0, true);
+            update(grid, high & ~search.high, 64, true);
+        }
+        search.low = low;
+        search.high = high;
+        return grid;
+    }
+
+    /**
+     * @param grid   The grid.
+     * @param fields The fields to change, as bit set.
+     * @param offset The index of the first bit.
+     * @param given  True to set the numbers, false to clear them.
+     */
+    private void update(SearchGrid grid, long fields, int offset, boolean given) {
+        for (; fields != 0; fields &= fields - 1) {
+            int index = offset + Long.numberOfTrailingZeros(fields);
+            if (given)
+                grid.set(index, solution[index]);
+            else
+                grid.clear(index);
+        }
+    }
+
+    /**
+     * Looks for a witness, that is a solution
+     * of the givens without the index.
+     *
+     * @param low   The first 64 fields of the givens.
+     * @param high  The other fields of the givens.
+     * @param index The index.
+     * @return True if there is such a witness.
+     */
+    private synchronized boolean hasWitness(long low, long high, int index) {
+        long bitLow = index < 64 ? 1L << index : 0;
+        long bitHigh = index < 64 ? 0 : 1L << (index - 64);
+        for (int w = 0; w < witnesses; w++)
+            if ((witnessLow[w] & low) == bitLow && (witnessHigh[w] & high) == bitHigh)
+                return true;
+        return false;
+    }
+
+    /**
+     * Looks for a proof, that is a set of givens
+     * with a unique solution, which the givens hold.
+     *
+     * @param low  The first 64 fields of the givens.
+     * @param high The other fields of the givens.
+     * @return True if there is such a proof.
+     */
+    private synchronized boolean hasProof(long low, long high) {
+        for (int p = 0; p < proofs; p++)
+            if ((proofLow[p] & ~low) == 0 && (proofHigh[p] & ~high) == 0)
+                return true;
+        return false;
+    }
+
+    /**
+     * Stores the givens of a unique puzzle as proof.
+     *
+     * @param low  The first 64 fields of the givens.
+     * @param high The other fields of the givens.
+     */
+    private synchronized void addProof(long low, long high) {
+        int p = proofs < MAX_PROOFS ? proofs++ : nextProof++ % MAX_PROOFS;
+        proofLow[p] = low;
+        proofHigh[p] = high;
+    }
+
+    /**
+     * Stores a second solution as witness.
+     *
+     * @param other The second solution.
+     */
+    private synchronized void addWitness(byte[] other) {
+        long low = 0, high = 0;
+        for (int i = 0; i < FIELD_COUNT; i++) {
+            if (other[i] != solution[i]) {
+                if (i < 64)
+                    low |= 1L << i;
+                else
+                    high |= 1L << (i - 64);
+            }
+        }
+        int w = witnesses < MAX_WITNESSES ? witnesses++ : nextWitness++ % MAX_WITNESSES;
+        witnessLow[w] = low;
+        witnessHigh[w] = high;
+    }
+
+    /**
+     * @return The number of holes that were
+     * decided by a witness, without a search.
+     */
+    long getWitnessHits() {
+        return witnessHits.get();
+    }
+
+    /**
+     * @return The number of holes that were
+     * proven right by a proof, without a search.
+     */
+    long getProofHits() {
+        return proofHits.get();
+    }
+
+    /**
+     * @return The number of holes that
+     * needed a search.
+     */
+    long getSearches() {
+        return searches.get();
+    }
+}
@@ -25,23 +25,37 @@
 package com.georg;
 
 import com.georg.GUI.UserInterface;
-import com.georg.Generator.CompSudoku;
+import com.georg.Generator.PuzzlePool;
 import com.georg.Generator.StaticGenerator;
 import com.georg.Generator.SudokuSolver;
 
 import javax.swing.*;
 import java.io.IOException;
+import java.nio.file.Paths;
 
 @SuppressWarnings("unused")
 public class Main {
+    /**
+     * The time between two saves of the puzzle pool.
+     */
+    private static final long POOL_SAVE_PERIOD = 60 * 1000;
 
     public static void main(String[] args) throws IOException {
+        // With arguments the program runs headless, see CommandLine.
+        if (args.length > 0)
+            System.exit(CommandLine.run(args));
+
         try {
             UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
         } catch (ClassNotFoundException | InstantiationException | IllegalAccessException | UnsupportedLookAndFeelException e) {
             e.printStackTrace();
         }
 
+        // -Dsudoku.pool=<directory> keeps the generated stock across restarts.
+        String pool = System.getProperty("sudoku.pool");
+        if (pool != null)
+            PuzzlePool.getShared().persist(Paths.get(pool), POOL_SAVE_PERIOD);
+
         new UserInterface();
     }
 
@@ -56,9 +70,11 @@ public class Main {
                 5, 8, -1, -1, -1, 7, 1, 2, -1,
                 2, 1, -1, 3, -1, -1, 6, -1, -1,
                 -1, -1, -1, -1, -1, -1, -1, -1, -1});
-        SudokuSolver.DFSLV(new CompSudoku(m), System.currentTimeMillis() * 2, 0, 1);
+        Sudoku solved = new SudokuSolver().solve(m);
+        if (solved == null)
+            throw new ValueFormatException("The sudoku has no solution");
         try {
-            SaveHandler.save("/Users/Georg/Desktop/out.pdf", SudokuSolver.getLastField());
+            SaveHandler.save("/Users/Georg/Desktop/out.pdf", solved);
         } catch (IOException e) {
             e.printStackTrace();
         }
@@ -67,7 +83,7 @@ public class Main {
     private static void testSudokuGen(Level l) throws ValueFormatException {
         Sudoku su = StaticGenerator.GenerateSudoku(l);
         System.out.println(su + "\n\n");
-        int i = SudokuSolver.solutions(su);
+        int i = SudokuSolver.solutions(su, 2);
         assert 1 == i : "The sudoku has " + i + " solution(s)";
     }
 
@@ -81,7 +97,7 @@ public class Main {
             e.printStackTrace();
         }
 
-        int i = SudokuSolver.solutions(su);
+        int i = SudokuSolver.solutions(su, 2);
         assert 1 == i : "The sudoku has " + i + " solution(s)";
     }
 }
@@ -0,0 +1,373 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 Georg A. Friedrich
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.georg;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+
+import static com.georg.Sudoku.FIELD_COUNT;
+import static com.georg.Sudoku.NAN;
+import static java.nio.file.StandardOpenOption.*;
+
+//@formatter:off
+/**
+ * A binary file of many sudokus. Every record
+ * has the same size, so the n-th sudoku is read
+ * directly from the memory mapped file:
+ * <pre><code>
+ * +-------+-------+------------+------+----------+----------+---
+ * | magic | flags | recordSize | 0    | record 0 | record 1 | ...
+ * |  int  |  int  |    int     | int  |          |          |
+ * +-------+-------+------------+------+----------+----------+---
+ *
+ * record: | level | sudoku   | solution, if FLAG_SOLUTIONS |
+ *         | byte  | 41 bytes | 41 bytes                    |
+ * </code></pre>
+ * A field is packed with 4 bits per field, 0 is a
+ * free field. The number of records follows from the
+ * size of the file, so a cut off file is still read
+ * up to its last whole record.
+ * <p>
+ * {@link Writer} writes an archive, {@link Reader}
+ * reads one from the start to the end without mapping it.
+ */
+//@formatter:on
+public class PuzzleArchive implements AutoCloseable {
+    /**
+     * "SDKA", marks the file type.
+     */
+    private static final int MAGIC = 0x53444B41;
+    /**
+     * Set if the records hold the solutions.
+     */
+    public static final int FLAG_SOLUTIONS = 1;
+    /**
+     * The bytes of one packed field.
+     */
+    public static final int PACKED_SIZE = (FIELD_COUNT + 1) / 2;
+    /**
+     * The bytes of the header.
+     */
+    private static final int HEADER_SIZE = 16;
+    /**
+     * The most bytes of one mapped segment.
+     */
+    private static final int SEGMENT_SIZE = 1 << 30;
+
+    private final FileChannel channel;
+    private final int flags;
+    private final int recordSize;
+    private final long records;
+    /**
+     * The mapped file, split into segments of whole
+     * records, because one mapping ends at 2 GB.
+     */
+    private final MappedByteBuffer[] segments;
+    private final int perSegment;
+
+    private PuzzleArchive(FileChannel channel) throws IOException {
+        this.channel = channel;
+        ByteBuffer header = readHeader(channel);
+        flags = header.getInt(4);
+        recordSize = header.getInt(8);
+        records = (channel.size() - HEADER_SIZE) / recordSize;
+        perSegment = SEGMENT_SIZE / recordSize;
+        segments = new MappedByteBuffer[(int) ((records + perSegment - 1) / perSegment)];
+        for (int i = 0; i < segments.length; i++) {
+            long first = (long) i * perSegment;
+            long count = Math.min(perSegment, records - first);
+            segments[i] = channel.map(FileChannel.MapMode.READ_ONLY,
+                    HEADER_SIZE + first * recordSize, count * recordSize);
+        }
+    }
+
+    /**
+     * Opens an archive for random access.
+     *
+     * @param file The file.
+     * @return The archive.
+     * @throws IOException If the file can not be
+     *                     read or is no archive.
+     */
+    public static PuzzleArchive open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, READ);
+        try {
+            return new PuzzleArchive(channel);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return The number of sudokus.
+     */
+    public long size() {
+        return records;
+    }
+
+    /**
+     * @return True if the records hold the solutions.
+     */
+    public boolean hasSolutions() {
+        return (flags & FLAG_SOLUTIONS) != 0;
+    }
+
+    /**
+     * Reads the sudoku with the given index.
+     *
+     * @param index The index, 0 to {@link #size()} - 1.
+     * @return The sudoku, with its solution if the
+     * archive holds one for it.
+     * @throws IOException If the record is damaged.
+     */
+    public Sudoku get(long index) throws IOException {
+        if (index < 0 || index >= records)
+            throw new IndexOutOfBoundsException("No sudoku " + index + " of " + records);
+        return decode(segments[(int) (index / perSegment)],
+                (int) (index % perSegment) * recordSize, hasSolutions());
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * @param channel The file, read from the start.
+     * @return The header, checked.
+     * @throws IOException If it is no archive.
+     */
+    private static ByteBuffer readHeader(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        while (header.hasRemaining())
+            if (channel.read(header, header.position()) < 0)
+                throw new IOException("Not a puzzle archive");
+        if (header.getInt(0) != MAGIC || header.getInt(8) != recordSize(header.getInt(4)))
+            throw new IOException("Not a puzzle archive");
+        return header;
+    }
+
+    /**
+     * @param flags The flags of the archive.
+     * @return The bytes of one record.
+     */
+    private static int recordSize(int flags) {
+        return 1 + ((flags & FLAG_SOLUTIONS) != 0 ? 2 : 1) * PACKED_SIZE;
+    }
+
+    /**
+     * @param in        The buffer.
+     * @param pos       The position of the record.
+     * @param solutions True if the record holds the solution.
+     * @return The sudoku of the record.
+     */
+    private static Sudoku decode(ByteBuffer in, int pos, boolean solutions) throws IOException {
+        int ordinal = in.get(pos);
+        Level[] levels = Level.values();
+        if (ordinal < 0 || ordinal >= levels.length)
+            throw new IOException("Damaged record, unknown level " + ordinal);
+        Level level = levels[ordinal];
+        byte[] field = new byte[FIELD_COUNT];
+        unpack(in, pos + 1, field);
+        Sudoku solution = null;
+        if (solutions) {
+            byte[] solved = new byte[FIELD_COUNT];
+            unpack(in, pos + 1 + PACKED_SIZE, solved);
+            if (solved[0] != NAN)
+                solution = newSudoku(level, solved, null);
+        }
+        return newSudoku(level, field, solution);
+    }
+
+    private static Sudoku newSudoku(Level level, byte[] field, Sudoku solution) throws IOException {
+        try {
+            return new Sudoku(level, field, solution);
+        } catch (ValueFormatException e) {
+            throw new IOException(e.getMessage());
+        }
+    }
+
+    /**
+     * Packs a field with 4 bits per field,
+     * the first field in the upper bits.
+     *
+     * @param field The field.
+     * @param out   The buffer, gets {@link #PACKED_SIZE} bytes.
+     */
+    public static void pack(byte[] field, ByteBuffer out) {
+        for (int i = 0; i < FIELD_COUNT; i += 2) {
+            int hi = field[i] == NAN ? 0 : field[i];
+            int lo = i + 1 < FIELD_COUNT && field[i + 1] != NAN ? field[i + 1] : 0;
+            out.put((byte) (hi << 4 | lo));
+        }
+    }
+
+    /**
+     * Unpacks a field packed by {@link #pack(byte[], ByteBuffer)}.
+     *
+     * @param in    The buffer.
+     * @param pos   The position of the packed field.
+     * @param field The array for the field.
+     */
+    public static void unpack(ByteBuffer in, int pos, byte[] field) {
+        for (int i = 0; i < FIELD_COUNT; i += 2) {
+            int b = in.get(pos + i / 2);
+            field[i] = (byte) ((b >> 4 & 0xF) == 0 ? NAN : b >> 4 & 0xF);
+            if (i + 1 < FIELD_COUNT)
+                field[i + 1] = (byte) ((b & 0xF) == 0 ? NAN : b & 0xF);
+        }
+    }
+
+    /**
+     * Writes an archive record by record,
+     * through a buffer of many records.
+     */
+    public static class Writer implements Closeable {
+        private final FileChannel channel;
+        private final boolean solutions;
+        private final int recordSize;
+        private final ByteBuffer buf;
+        private long written;
+
+        /**
+         * Creates the archive, an existing file is replaced.
+         *
+         * @param file      The file.
+         * @param solutions True to keep the solutions.
+         * @throws IOException If the file can not be written.
+         */
+        public Writer(Path file, boolean solutions) throws IOException {
+            this.solutions = solutions;
+            int flags = solutions ? FLAG_SOLUTIONS : 0;
+            recordSize = recordSize(flags);
+            buf = ByteBuffer.allocate(1024 * recordSize);
+            channel = FileChannel.open(file, CREATE, TRUNCATE_EXISTING, WRITE);
+            buf.putInt(MAGIC).putInt(flags).putInt(recordSize).putInt(0);
+        }
+
+        /**
+         * Adds a sudoku at the end of the archive.
+         *
+         * @param su The sudoku.
+         * @throws IOException If the file can not be written.
+         */
+        public void write(Sudoku su) throws IOException {
+            if (buf.remaining() < recordSize)
+                flush();
+            buf.put((byte) su.getDifficulty().ordinal());
+            pack(su.getField(), buf);
+            if (solutions) {
+                if (su.getSolution() != null)
+                    pack(su.getSolution().getField(), buf);
+                else
+                    buf.put(new byte[PACKED_SIZE]);
+            }
+            written++;
+        }
+
+        /**
+         * @return The number of sudokus written.
+         */
+        public long getWritten() {
+            return written;
+        }
+
+        private void flush() throws IOException {
+            buf.flip();
+            while (buf.hasRemaining())
+                channel.write(buf);
+            buf.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                flush();
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * Reads an archive from the start
+     * to the end, through a buffer.
+     */
+    public static class Reader implements Closeable {
+        private final FileChannel channel;
+        private final boolean solutions;
+        private final int recordSize;
+        private final ByteBuffer buf;
+
+        /**
+         * @param file The archive.
+         * @throws IOException If the file can not
+         *                     be read or is no archive.
+         */
+        public Reader(Path file) throws IOException {
+            channel = FileChannel.open(file, READ);
+            try {
+                ByteBuffer header = readHeader(channel);
+                solutions = (header.getInt(4) & FLAG_SOLUTIONS) != 0;
+                recordSize = header.getInt(8);
+                channel.position(HEADER_SIZE);
+            } catch (IOException e) {
+                channel.close();
+                throw e;
+            }
+            buf = ByteBuffer.allocate(1024 * recordSize);
+            buf.flip();
+        }
+
+        /**
+         * @return The next sudoku, null at the end.
+         * @throws IOException If the file can not be read.
+         */
+        public Sudoku read() throws IOException {
+            if (buf.remaining() < recordSize) {
+                buf.compact();
+                int n = 0;
+                while (buf.hasRemaining() && n >= 0)
+                    n = channel.read(buf);
+                buf.flip();
+                // A cut off last record is ignored.
+                if (buf.remaining() < recordSize)
+                    return null;
+            }
+            Sudoku su = decode(buf, buf.position(), solutions);
+            buf.position(buf.position() + recordSize);
+            return su;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
@@ -31,6 +31,8 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 
+import static com.georg.FieldTables.COL_OF;
+import static com.georg.FieldTables.ROW_OF;
 import static com.georg.Sudoku.FIELD_SIZE;
 
 /**
@@ -64,6 +66,21 @@ public class SaveHandler {
             saveTXT(name + (name.toLowerCase().endsWith(".txt") ? "" : ".txt"), sudoku);
     }
 
+    /**
+     * Saves the answer key of the sudoku,
+     * in the same formats as {@link #save(String, Sudoku)}.
+     *
+     * @param name   The name of the file
+     * @param sudoku The sudoku
+     * @throws IOException If the solution
+     *                     of the sudoku is not known.
+     */
+    public static void saveSolution(String name, Sudoku sudoku) throws IOException {
+        if (sudoku.getSolution() == null)
+            throw new IOException("The solution of the sudoku is not known");
+        save(name, sudoku.getSolution());
+    }
+
     /**
      * Saves the sudoku as a pdf file
      *
@@ -134,7 +151,7 @@ public class SaveHandler {
 
             if (c == (0x30 + Sudoku.NAN))
                 c = 0x20;
-            graphics2D.drawChars(new char[]{c}, 0, 1, cx + fOffset + (i % FIELD_SIZE) * tileSize, cy + fOffset + (i / FIELD_SIZE) * tileSize);
+            graphics2D.drawChars(new char[]{c}, 0, 1, cx + fOffset + COL_OF[i] * tileSize, cy + fOffset + ROW_OF[i] * tileSize);
         }
     }
 
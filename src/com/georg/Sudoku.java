@@ -111,6 +111,13 @@ public class Sudoku implements Cloneable {
      * </code></pre>
      */
     protected byte[] field;
+    /**
+     * The solution of the field, if it is
+     * known, else null. The generator knows
+     * it from the terminal pattern, so no
+     * one has to solve the field again.
+     */
+    protected Sudoku solution;
 
     /**
      * This initializer generates an sudoku
@@ -122,10 +129,24 @@ public class Sudoku implements Cloneable {
      * @throws ValueFormatException If the input fieldsize is not matching the hardcoded one.
      */
     public Sudoku(Level level, byte[] field) throws ValueFormatException {
+        this(level, field, null);
+    }
+
+    /**
+     * This initializer generates an sudoku
+     * with a known solution.
+     *
+     * @param level    The difficulty. See {@link Level}.
+     * @param field    The field.
+     * @param solution The solution of the field, can be null.
+     * @throws ValueFormatException If the input fieldsize is not matching the hardcoded one.
+     */
+    public Sudoku(Level level, byte[] field, Sudoku solution) throws ValueFormatException {
         difficulty = level;
         if (field.length != FIELD_COUNT) // ERROR field not possible.
             throw new ValueFormatException("Wrong field size. Should be 81 is" + field.length);
         this.field = field.clone();
+        this.solution = solution;
     }
 
     /**
@@ -180,6 +201,31 @@ public class Sudoku implements Cloneable {
         return difficulty;
     }
 
+    /**
+     * @return The solution of the field,
+     * null if it is not known.
+     */
+    public Sudoku getSolution() {
+        return solution;
+    }
+
+    /**
+     * Checks if every given number of this
+     * field is the same on the other field.
+     * Can be used to check if the
+     * {@link #getSolution() solution} still
+     * fits after the field was edited.
+     *
+     * @param other The other field, f.E. a solution.
+     * @return True if no given number differs.
+     */
+    public boolean agreesWith(Sudoku other) {
+        for (int i = 0; i < FIELD_COUNT; i++)
+            if (field[i] != NAN && field[i] != other.field[i])
+                return false;
+        return true;
+    }
+
     /**
      * The whole field, nonadjustable.
      *
@@ -189,6 +235,21 @@ public class Sudoku implements Cloneable {
         return field.clone();
     }
 
+    /**
+     * The field as one line of {@link #FIELD_COUNT}
+     * characters, row by row, f.E.
+     * <code>4.3.1..9.</code>... with a dot for
+     * every empty field.
+     *
+     * @return The line.
+     */
+    public String toLine() {
+        char[] out = new char[FIELD_COUNT];
+        for (int i = 0; i < FIELD_COUNT; i++)
+            out[i] = field[i] == NAN ? '.' : Character.forDigit(field[i], MAX_NUM + 1);
+        return new String(out);
+    }
+
     @Override
     public String toString() {
         String out = "";
@@ -218,7 +279,7 @@ public class Sudoku implements Cloneable {
     protected Object clone() throws CloneNotSupportedException {
         super.clone();
         try {
-            return new Sudoku(difficulty, field.clone());
+            return new Sudoku(difficulty, field.clone(), solution);
         } catch (ValueFormatException e) {
             e.printStackTrace();
         }
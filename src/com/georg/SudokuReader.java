@@ -0,0 +1,336 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016 Georg A. Friedrich
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.georg;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+import static com.georg.Sudoku.BLOCK_SIZE;
+import static com.georg.Sudoku.FIELD_COUNT;
+import static com.georg.Sudoku.FIELD_SIZE;
+import static com.georg.Sudoku.NAN;
+
+//@formatter:off
+/**
+ * Reads sudokus from text, in two layouts:
+ * <pre><code>
+ * 4.3.1..9.....                  one line of 81 fields,
+ *                                a dot or 0 is a free field
+ *
+ * # Easy                         the {@link Sudoku#toString() grid},
+ *  6 7 5 | 9 3 4 | 1 2 8         a line with # and the level
+ *    1 9 | 5 2 6 |               before it is optional
+ * -------|-------|-------
+ * ...
+ * </code></pre>
+ * Both can be mixed in one file, empty lines are
+ * skipped. The text is read through a buffer and
+ * decoded byte by byte into the field, without
+ * a String for every line.
+ */
+//@formatter:on
+public class SudokuReader implements Closeable {
+    /**
+     * The size of the read buffer.
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+    /**
+     * The characters of a grid row, blocks
+     * and separators included.
+     */
+    private static final int ROW_LENGTH = 2 * FIELD_SIZE + 2 * (FIELD_SIZE / BLOCK_SIZE - 1);
+
+    private final ReadableByteChannel channel;
+    private final ByteBuffer buf = ByteBuffer.allocate(BUFFER_SIZE);
+    private boolean eof;
+    /**
+     * The start and end of the current line in the buffer.
+     */
+    private int start, end;
+    /**
+     * The number of the current line.
+     */
+    private long line;
+    /**
+     * True if {@link #nextLine()} gives
+     * the current line once more.
+     */
+    private boolean reuse;
+    /**
+     * The level of the last # line.
+     */
+    private Level level = Level.None;
+
+    /**
+     * @param channel The text.
+     */
+    public SudokuReader(ReadableByteChannel channel) {
+        this.channel = channel;
+        buf.flip();
+    }
+
+    /**
+     * @param file The file.
+     * @throws IOException If the file can not be read.
+     */
+    public SudokuReader(Path file) throws IOException {
+        this(FileChannel.open(file));
+    }
+
+    /**
+     * Reads the standard input.
+     *
+     * @return The reader.
+     */
+    public static SudokuReader stdin() {
+        return new SudokuReader(Channels.newChannel(System.in));
+    }
+
+    /**
+     * @return The number of the last line read.
+     */
+    public long getLine() {
+        return line;
+    }
+
+    /**
+     * @return The level of the last sudoku,
+     * {@link Level#None} if the text does not say.
+     */
+    public Level getLevel() {
+        return level;
+    }
+
+    /**
+     * Reads the next sudoku into the array.
+     * After a {@link ValueFormatException} the
+     * reading goes on with the next sudoku, a
+     * broken grid is skipped up to its end, so
+     * every entry gives one result.
+     *
+     * @param field The array for the field, same
+     *              layout as {@link Sudoku}.
+     * @return False at the end of the text.
+     * @throws IOException          If the text can not be read.
+     * @throws ValueFormatException If the text is no sudoku.
+     */
+    public boolean next(byte[] field) throws IOException, ValueFormatException {
+        int row = 0;
+        // A broken row does not end the grid, the rest is read first.
+        ValueFormatException failure = null;
+        while (nextLine()) {
+            boolean gridLine = start != end && buf.get(start) != '#' && contains('|');
+            if (row > 0 && !gridLine) {
+                // The line after a short grid belongs to the next sudoku.
+                if (start != end)
+                    reuse = true;
+                throw failure != null ? failure : error("the grid ends after " + row + " rows");
+            }
+            if (start == end)
+                continue;
+            if (buf.get(start) == '#') {
+                level = parseLevel();
+            } else if (row == 0 && isLine()) {
+                decodeLine(field);
+                return true;
+            } else if (gridLine) {
+                if (!contains('-')) {
+                    try {
+                        decodeRow(field, row);
+                    } catch (ValueFormatException e) {
+                        if (failure == null)
+                            failure = e;
+                    }
+                    if (++row == FIELD_SIZE) {
+                        if (failure != null)
+                            throw failure;
+                        return true;
+                    }
+                }
+            } else
+                throw error("no sudoku");
+        }
+        if (row > 0)
+            throw failure != null ? failure : error("the grid ends after " + row + " rows");
+        return false;
+    }
+
+    /**
+     * Reads the next sudoku.
+     *
+     * @return The sudoku, null at the end of the text.
+     * @throws IOException          If the text can not be read.
+     * @throws ValueFormatException If the text is no sudoku.
+     * @see #next(byte[])
+     */
+    public Sudoku read() throws IOException, ValueFormatException {
+        byte[] field = new byte[FIELD_COUNT];
+        return next(field) ? new Sudoku(level, field) : null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Finds the next line in the buffer and sets
+     * {@link #start} and {@link #end}, without the
+     * line break and trailing white space.
+     *
+     * @return False at the end of the text.
+     */
+    private boolean nextLine() throws IOException {
+        if (reuse) {
+            reuse = false;
+            return true;
+        }
+        int scan = buf.position();
+        while (true) {
+            for (; scan < buf.limit(); scan++) {
+                if (buf.get(scan) == '\n') {
+                    setLine(scan);
+                    buf.position(scan + 1);
+                    return true;
+                }
+            }
+            if (eof) {
+                if (!buf.hasRemaining())
+                    return false;
+                setLine(buf.limit());
+                buf.position(buf.limit());
+                return true;
+            }
+            if (buf.position() == 0 && buf.limit() == buf.capacity())
+                throw new IOException("Line " + (line + 1) + " is too long");
+            scan -= buf.position();
+            buf.compact();
+            eof = channel.read(buf) < 0;
+            buf.flip();
+        }
+    }
+
+    /**
+     * @param lineEnd The position of the line break.
+     */
+    private void setLine(int lineEnd) {
+        line++;
+        start = buf.position();
+        end = lineEnd;
+        while (end > start && buf.get(end - 1) <= ' ')
+            end--;
+    }
+
+    /**
+     * @return True if the line starts with {@link Sudoku#FIELD_COUNT}
+     * fields, followed by nothing or a separator.
+     */
+    private boolean isLine() {
+        if (end - start < FIELD_COUNT)
+            return false;
+        for (int i = start; i < start + FIELD_COUNT; i++) {
+            byte c = buf.get(i);
+            if (c != '.' && (c < '0' || c > '9'))
+                return false;
+        }
+        if (end - start == FIELD_COUNT)
+            return true;
+        byte next = buf.get(start + FIELD_COUNT);
+        return next == ' ' || next == '\t' || next == ',' || next == ';';
+    }
+
+    /**
+     * @param c The character.
+     * @return True if the line has it.
+     */
+    private boolean contains(char c) {
+        for (int i = start; i < end; i++)
+            if (buf.get(i) == c)
+                return true;
+        return false;
+    }
+
+    /**
+     * @param field The array for the field.
+     */
+    private void decodeLine(byte[] field) {
+        for (int i = 0; i < FIELD_COUNT; i++) {
+            byte c = buf.get(start + i);
+            field[i] = c == '.' || c == '0' ? NAN : (byte) (c - '0');
+        }
+    }
+
+    /**
+     * Decodes a row of the grid, a field
+     * is a space and the number or a space.
+     * Missing fields at the end are free.
+     *
+     * @param field The array for the field.
+     * @param row   The row.
+     * @throws ValueFormatException If a field is no number.
+     */
+    private void decodeRow(byte[] field, int row) throws ValueFormatException {
+        if (end - start > ROW_LENGTH)
+            throw error("the row is too long");
+        for (int col = 0; col < FIELD_SIZE; col++) {
+            int pos = start + 1 + 2 * col + 2 * (col / BLOCK_SIZE);
+            byte c = pos < end ? buf.get(pos) : (byte) ' ';
+            if (c == ' ')
+                field[row * FIELD_SIZE + col] = NAN;
+            else if (c >= '1' && c <= '9')
+                field[row * FIELD_SIZE + col] = (byte) (c - '0');
+            else
+                throw error("'" + (char) c + "' is no number");
+        }
+    }
+
+    /**
+     * @return The level named after the #,
+     * {@link Level#None} if there is none.
+     */
+    private Level parseLevel() {
+        byte[] bytes = new byte[end - start - 1];
+        for (int i = 0; i < bytes.length; i++)
+            bytes[i] = buf.get(start + 1 + i);
+        String name = new String(bytes, StandardCharsets.UTF_8).trim();
+        for (Level l : Level.values())
+            if (l.name().equalsIgnoreCase(name) || l.toString().equalsIgnoreCase(name))
+                return l;
+        return Level.None;
+    }
+
+    /**
+     * @param msg What is wrong.
+     * @return The exception, with the line.
+     */
+    private ValueFormatException error(String msg) {
+        return new ValueFormatException("Line " + line + ": " + msg);
+    }
+}